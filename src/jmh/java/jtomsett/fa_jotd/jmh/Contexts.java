@@ -0,0 +1,24 @@
+package jtomsett.fa_jotd.jmh;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+final class Contexts {
+
+    private Contexts() {
+    }
+
+    /**
+     * Command-line arguments for an application context started inside a benchmark fork: no banner,
+     * no startup logging and a private H2 database per fork. Arguments rather than
+     * {@code SpringApplicationBuilder.properties} so they win over {@code application.properties}.
+     */
+    static String[] args(String... properties) {
+        return Stream.concat(Stream.of(
+                        "spring.main.banner-mode=off",
+                        "spring.main.log-startup-info=false",
+                        "logging.level.root=warn",
+                        "spring.datasource.url=jdbc:h2:mem:jmh-" + ProcessHandle.current().pid()),
+                Arrays.stream(properties)).map(property -> "--" + property).toArray(String[]::new);
+    }
+}
@@ -0,0 +1,82 @@
+package jtomsett.fa_jotd.jmh;
+
+import jtomsett.fa_jotd.FaJotdApplication;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import jtomsett.fa_jotd.service.JokeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static jtomsett.fa_jotd.jmh.JokeServiceBenchmark.DAYS;
+import static jtomsett.fa_jotd.jmh.JokeServiceBenchmark.START;
+
+/**
+ * {@link JokeRepository} reads with no caches in front, for the JPA repository on H2 and for the
+ * in-memory storage engine ({@code jotd.storage=memory}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class JokeRepositoryBenchmark {
+
+    @Param({"memory", "jpa"})
+    public String storage;
+
+    private ConfigurableApplicationContext context;
+    private JokeRepository jokeRepository;
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FaJotdApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(Contexts.args("jotd.storage=" + storage));
+        jokeRepository = context.getBean(JokeRepository.class);
+        ids = JokeServiceBenchmark.seed(context.getBean(JokeService.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Joke> findByDate() {
+        return jokeRepository.findByDate(START.plusDays(ThreadLocalRandom.current().nextInt(DAYS)));
+    }
+
+    @Benchmark
+    public Optional<Joke> findById() {
+        return jokeRepository.findById(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+    }
+
+    @Benchmark
+    public List<Joke> findByDateBetween() {
+        LocalDate from = START.plusDays(ThreadLocalRandom.current().nextInt(DAYS - 31));
+        return jokeRepository.findByDateBetweenOrderByDateAsc(from, from.plusDays(30), Limit.of(31));
+    }
+}
@@ -0,0 +1,85 @@
+package jtomsett.fa_jotd.jmh;
+
+import jtomsett.fa_jotd.FaJotdApplication;
+import jtomsett.fa_jotd.service.JokeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * The controller path through the {@code DispatcherServlet}, argument binding and message conversion,
+ * driven by {@link MockMvc} so socket and Tomcat costs stay out of the numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class JokeRestControllerBenchmark {
+
+    @Param({"1000", "0"})
+    public int responseCacheSize;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FaJotdApplication.class)
+                .run(Contexts.args("server.port=0", "jotd.response-cache.max-size=" + responseCacheSize));
+        JokeServiceBenchmark.seed(context.getBean(JokeService.class));
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] getJokeByDate() throws Exception {
+        return mockMvc.perform(get("/joke").param("date", randomDate().toString()))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] getJokeByDateGzip() throws Exception {
+        return mockMvc.perform(get("/joke").param("date", randomDate().toString())
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Benchmark
+    public byte[] getJokes() throws Exception {
+        LocalDate from = randomDate();
+        return mockMvc.perform(get("/jokes").param("from", from.toString()).param("to", from.plusDays(30).toString()))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private static LocalDate randomDate() {
+        return JokeServiceBenchmark.START.plusDays(ThreadLocalRandom.current().nextInt(JokeServiceBenchmark.DAYS - 31));
+    }
+}
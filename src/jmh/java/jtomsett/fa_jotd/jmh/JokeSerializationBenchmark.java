@@ -0,0 +1,75 @@
+package jtomsett.fa_jotd.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.JokePage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of {@link Joke}, using the same mapper settings Spring Boot applies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class JokeSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Joke joke;
+    private byte[] json;
+    private JokePage page;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        joke = new Joke("Why did the scarecrow win an award? Because he was outstanding in his field.",
+                LocalDate.of(2000, 1, 1));
+        joke.setId(1L);
+        joke.setVersion(0L);
+        json = objectMapper.writeValueAsBytes(joke);
+
+        List<Joke> jokes = new ArrayList<>(31);
+        for (int i = 0; i < 31; i++) {
+            Joke day = new Joke("Joke " + i, joke.getDate().plusDays(i));
+            day.setId((long) i);
+            jokes.add(day);
+        }
+        page = new JokePage(jokes, joke.getDate().plusDays(30));
+    }
+
+    @Benchmark
+    public byte[] serializeJoke() throws Exception {
+        return objectMapper.writeValueAsBytes(joke);
+    }
+
+    @Benchmark
+    public Joke deserializeJoke() throws Exception {
+        return objectMapper.readValue(json, Joke.class);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
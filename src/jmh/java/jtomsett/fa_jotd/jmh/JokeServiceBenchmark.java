@@ -0,0 +1,96 @@
+package jtomsett.fa_jotd.jmh;
+
+import jtomsett.fa_jotd.FaJotdApplication;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.JokePage;
+import jtomsett.fa_jotd.service.JokeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link JokeService} against the in-memory H2 database, with the lookup cache on and off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class JokeServiceBenchmark {
+
+    static final int DAYS = 365;
+    static final LocalDate START = LocalDate.of(2000, 1, 1);
+
+    @Param({"10000", "0"})
+    public int lookupCacheSize;
+
+    private ConfigurableApplicationContext context;
+    private JokeService jokeService;
+    private List<Long> ids;
+    private final AtomicLong nextDay = new AtomicLong(DAYS);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FaJotdApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(Contexts.args("jotd.lookup-cache.max-size=" + lookupCacheSize));
+        jokeService = context.getBean(JokeService.class);
+        ids = seed(jokeService);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Joke> getJokeByDate() {
+        return jokeService.getJokeByDate(START.plusDays(ThreadLocalRandom.current().nextInt(DAYS)));
+    }
+
+    @Benchmark
+    public Optional<Joke> getJokeById() {
+        return jokeService.getJokeById(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+    }
+
+    @Benchmark
+    public JokePage getJokes() {
+        LocalDate from = START.plusDays(ThreadLocalRandom.current().nextInt(DAYS - 31));
+        return jokeService.getJokes(from, from.plusDays(30), 31, null);
+    }
+
+    @Benchmark
+    public Joke addJoke() {
+        return jokeService.addJoke(new Joke("Benchmark joke", START.plusDays(nextDay.getAndIncrement())));
+    }
+
+    static List<Long> seed(JokeService jokeService) {
+        List<Joke> jokes = new ArrayList<>(DAYS);
+        for (int i = 0; i < DAYS; i++) {
+            jokes.add(new Joke("Joke " + i, START.plusDays(i)));
+        }
+        return jokeService.addJokes(jokes).stream().map(result -> result.joke().getId()).toList();
+    }
+}
@@ -0,0 +1,37 @@
+package jtomsett.fa_jotd.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Concurrency limits that keep admin writes from starving public reads, see {@code BulkheadFilter}.
+ * Each request holds at most one database connection, so {@code adminMaxConcurrent} is also the admin
+ * path's share of the connection pool, and reads are held to what the pool has left.
+ *
+ * @param enabled            apply the limits at all
+ * @param readMaxConcurrent  reads served at once, at most the pool size less {@code adminMaxConcurrent};
+ *                           {@code null} for exactly that
+ * @param readMaxWait        how long a read queues for a slot before 503
+ * @param adminMaxConcurrent adds, updates and deletes served at once
+ * @param adminMaxWait       how long an admin request queues for a slot before 503
+ * @param retryAfter         sent as {@code Retry-After} with a 503
+ */
+@ConfigurationProperties("jotd.bulkhead")
+public record BulkheadProperties(@DefaultValue("true") boolean enabled,
+                                 Integer readMaxConcurrent,
+                                 @DefaultValue("2s") Duration readMaxWait,
+                                 @DefaultValue("4") int adminMaxConcurrent,
+                                 @DefaultValue("500ms") Duration adminMaxWait,
+                                 @DefaultValue("1s") Duration retryAfter) {
+
+    /**
+     * @param poolSize connections in the pool that reads and admin requests share
+     * @return how many reads may run at once without taking a connection from the admin share
+     */
+    public int readLimit(int poolSize) {
+        int left = Math.max(1, poolSize - adminMaxConcurrent);
+        return readMaxConcurrent == null ? left : Math.min(readMaxConcurrent, left);
+    }
+}
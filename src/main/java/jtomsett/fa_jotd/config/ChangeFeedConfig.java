@@ -0,0 +1,38 @@
+package jtomsett.fa_jotd.config;
+
+import jtomsett.fa_jotd.repository.JokeChangeRepository;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import jtomsett.fa_jotd.service.JokeChangeFeed;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+
+/**
+ * Tails the {@code joke_change} table when {@code jotd.change-feed.enabled=true}, for nodes that share
+ * one database behind a load balancer. Needs the JPA storage: the in-memory storages are per node anyway.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "jotd.change-feed.enabled", havingValue = "true")
+public class ChangeFeedConfig {
+
+    @Bean
+    public JokeChangeFeed jokeChangeFeed(JokeChangeRepository jokeChangeRepository, JokeRepository jokeRepository,
+                                         PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                                         Clock clock, ChangeFeedProperties properties) {
+        return new JokeChangeFeed(jokeChangeRepository, jokeRepository, transactionManager, eventPublisher, clock,
+                properties.settle(), properties.batchSize());
+    }
+
+    @Bean
+    public SchedulingConfigurer changeFeedPolling(JokeChangeFeed jokeChangeFeed, ChangeFeedProperties properties) {
+        return registrar -> {
+            registrar.addFixedDelayTask(jokeChangeFeed::poll, properties.pollInterval());
+            registrar.addFixedDelayTask(() -> jokeChangeFeed.purge(properties.retention()), properties.retention().dividedBy(4));
+        };
+    }
+}
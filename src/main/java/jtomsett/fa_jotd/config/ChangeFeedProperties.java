@@ -0,0 +1,24 @@
+package jtomsett.fa_jotd.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Change feed between nodes sharing one database, see {@code ChangeFeedConfig}.
+ *
+ * @param enabled      record every write in the {@code joke_change} table and apply other nodes' rows
+ * @param pollInterval pause between polls of the table, the bulk of the lag before another node's write is seen
+ * @param settle       how long an id skipped by a poll is looked up again, to catch rows from transactions
+ *                     that committed after a higher id; must exceed the longest write transaction
+ * @param batchSize    maximum rows read per query; a poll queries until it has caught up
+ * @param retention    how long rows are kept; a node that cannot poll for longer misses changes until restarted
+ */
+@ConfigurationProperties("jotd.change-feed")
+public record ChangeFeedProperties(@DefaultValue("false") boolean enabled,
+                                   @DefaultValue("1s") Duration pollInterval,
+                                   @DefaultValue("10s") Duration settle,
+                                   @DefaultValue("1000") int batchSize,
+                                   @DefaultValue("1h") Duration retention) {
+}
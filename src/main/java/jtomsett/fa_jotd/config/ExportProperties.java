@@ -0,0 +1,13 @@
+package jtomsett.fa_jotd.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param timeout how long {@code GET /jokes/export} may stream before the container ends it; zero or negative for no limit
+ */
+@ConfigurationProperties("jotd.export")
+public record ExportProperties(@DefaultValue("0s") Duration timeout) {
+}
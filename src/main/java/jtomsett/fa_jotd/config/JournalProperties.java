@@ -0,0 +1,26 @@
+package jtomsett.fa_jotd.config;
+
+import jtomsett.fa_jotd.repository.JokeJournal;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Journal behind {@code jotd.storage=journal}.
+ *
+ * @param directory        where journal and snapshot files are kept
+ * @param fsync            when appended records are forced to disk
+ * @param fsyncInterval    how often records are forced to disk with {@code fsync=interval}
+ * @param snapshotInterval how often the journal is compacted into a snapshot, if anything was written since the last one
+ * @param mapSize          how much of the journal file is memory-mapped at a time
+ */
+@ConfigurationProperties("jotd.journal")
+public record JournalProperties(@DefaultValue("data") Path directory,
+                                @DefaultValue("interval") JokeJournal.Fsync fsync,
+                                @DefaultValue("1s") Duration fsyncInterval,
+                                @DefaultValue("10m") Duration snapshotInterval,
+                                @DefaultValue("64MB") DataSize mapSize) {
+}
@@ -0,0 +1,39 @@
+package jtomsett.fa_jotd.config;
+
+import jtomsett.fa_jotd.repository.InMemoryJokeRepository;
+import jtomsett.fa_jotd.repository.JokeJournal;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+
+/**
+ * Keeps jokes in an {@link InMemoryJokeRepository} made durable by a {@link JokeJournal} when
+ * {@code jotd.storage=journal}. The jokes are replayed from the journal when the repository is created.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "jotd.storage", havingValue = "journal")
+public class JournalStorageConfig {
+
+    @Bean
+    public JokeJournal jokeJournal(JournalProperties properties) {
+        return new JokeJournal(properties.directory(), properties.fsync(), Math.toIntExact(properties.mapSize().toBytes()));
+    }
+
+    @Bean
+    @Primary
+    public InMemoryJokeRepository jokeRepository(JokeJournal jokeJournal) {
+        return new InMemoryJokeRepository(jokeJournal);
+    }
+
+    @Bean
+    public SchedulingConfigurer journalMaintenance(JokeJournal jokeJournal, InMemoryJokeRepository jokeRepository, JournalProperties properties) {
+        return registrar -> {
+            if (properties.fsync() == JokeJournal.Fsync.INTERVAL) {
+                registrar.addFixedDelayTask(jokeJournal::force, properties.fsyncInterval());
+            }
+            registrar.addFixedDelayTask(jokeRepository::compact, properties.snapshotInterval());
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package jtomsett.fa_jotd.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param maxSize maximum number of lookups kept per key type (id and date)
+ * @param ttl     how long a lookup is kept after it was loaded or written
+ * @param maxWait how long a lookup waits on another caller's load of the same key before failing with 503
+ */
+@ConfigurationProperties("jotd.lookup-cache")
+public record LookupCacheProperties(@DefaultValue("10000") long maxSize,
+                                    @DefaultValue("1h") Duration ttl,
+                                    @DefaultValue("2s") Duration maxWait) {
+}
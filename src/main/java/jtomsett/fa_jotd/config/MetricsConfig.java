@@ -0,0 +1,55 @@
+package jtomsett.fa_jotd.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jtomsett.fa_jotd.controller.JokeResponseCache;
+import jtomsett.fa_jotd.repository.StatementCounter;
+import jtomsett.fa_jotd.service.JokeLookupCache;
+import jtomsett.fa_jotd.service.SingleFlight;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@Configuration(proxyBeanMethods = false)
+public class MetricsConfig {
+
+    // Backs @Timed on the service; the controller is covered by Spring MVC's http.server.requests.
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCounterCustomizer(StatementCounter statementCounter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementCounter);
+    }
+
+    // cache.gets{result=hit|miss}, cache.evictions and cache.size for every in-process joke cache.
+    @Bean
+    public MeterBinder jokeCacheMetrics(JokeLookupCache jokeLookupCache, JokeResponseCache jokeResponseCache) {
+        return registry -> {
+            jokeLookupCache.caches().forEach((name, cache) -> CaffeineCacheMetrics.monitor(registry, cache, name));
+            jokeResponseCache.caches().forEach((name, cache) -> CaffeineCacheMetrics.monitor(registry, cache, name));
+        };
+    }
+
+    // jotd.cache.coalesced: calls that waited on a concurrent load of the same key instead of running their own.
+    @Bean
+    public MeterBinder jokeCacheCoalescingMetrics(JokeLookupCache jokeLookupCache, JokeResponseCache jokeResponseCache) {
+        return registry -> {
+            Map<String, SingleFlight<?, ?>> loads = new TreeMap<>(jokeLookupCache.loads());
+            loads.putAll(jokeResponseCache.loads());
+            loads.forEach((name, flight) -> FunctionCounter.builder("jotd.cache.coalesced", flight, SingleFlight::coalesced)
+                    .description("Lookups that waited on a concurrent load of the same key")
+                    .tag("cache", name)
+                    .register(registry));
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package jtomsett.fa_jotd.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Read replica used by read-only transactions. Routing is only set up when {@code url} is configured.
+ *
+ * @param url            JDBC url of the replica
+ * @param username       replica user
+ * @param password       replica password
+ * @param readYourWrites how long after a write on this node reads stay on the primary, to cover replica lag
+ */
+@ConfigurationProperties("jotd.replica")
+public record ReplicaProperties(String url,
+                                String username,
+                                String password,
+                                @DefaultValue("2s") Duration readYourWrites) {
+}
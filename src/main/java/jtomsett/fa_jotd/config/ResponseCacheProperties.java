@@ -0,0 +1,15 @@
+package jtomsett.fa_jotd.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param maxSize maximum number of serialized jokes kept per key type (id and date)
+ * @param maxWait how long a request waits on another request serializing the same joke before failing with 503
+ */
+@ConfigurationProperties("jotd.response-cache")
+public record ResponseCacheProperties(@DefaultValue("1000") long maxSize,
+                                      @DefaultValue("2s") Duration maxWait) {
+}
@@ -0,0 +1,76 @@
+package jtomsett.fa_jotd.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed number of slots; callers queue in arrival order for up to {@code maxWait} and are rejected
+ * after that. Publishes {@code jotd.bulkhead.active}, {@code .queued}, {@code .wait} and {@code .rejected}
+ * tagged with the bulkhead's name.
+ */
+final class Bulkhead {
+
+    private final Duration maxWait;
+    private final Semaphore slots;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Timer wait;
+    private final Counter rejected;
+
+    Bulkhead(String name, int maxConcurrent, Duration maxWait, MeterRegistry meterRegistry) {
+        this.maxWait = maxWait;
+        this.slots = new Semaphore(maxConcurrent, true);
+        Gauge.builder("jotd.bulkhead.active", slots, s -> maxConcurrent - s.availablePermits())
+                .description("Requests holding a bulkhead slot")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("jotd.bulkhead.queued", queued, AtomicInteger::get)
+                .description("Requests waiting for a bulkhead slot")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        this.wait = Timer.builder("jotd.bulkhead.wait")
+                .description("Time requests waited for a bulkhead slot, admitted or not")
+                .tag("bulkhead", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejected = Counter.builder("jotd.bulkhead.rejected")
+                .description("Requests turned away by a full bulkhead")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return whether a slot was taken; a caller that got one must {@link #release()} it
+     */
+    boolean tryAcquire() throws InterruptedException {
+        // A zero timeout still honours fairness, unlike tryAcquire(), so nobody jumps the queue.
+        if (slots.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+            wait.record(0, TimeUnit.NANOSECONDS);
+            return true;
+        }
+
+        long start = System.nanoTime();
+        queued.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } finally {
+            queued.decrementAndGet();
+            wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejected.increment();
+        }
+        return acquired;
+    }
+
+    void release() {
+        slots.release();
+    }
+}
@@ -0,0 +1,106 @@
+package jtomsett.fa_jotd.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jtomsett.fa_jotd.config.BulkheadProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Separate concurrency limits for public reads and admin writes, so a large import or a slow update
+ * cannot take every request thread and database connection from {@code GET /joke}. Reads are held to
+ * the connections the admin share leaves, so they cannot starve admin writes of connections either.
+ * A request that cannot get a slot in time is answered 503 with {@code Retry-After}.
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "jotd.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    private final Bulkhead read;
+    private final Bulkhead admin;
+    private final String retryAfter;
+
+    public BulkheadFilter(BulkheadProperties properties,
+                          @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                          MeterRegistry meterRegistry) {
+        if (properties.adminMaxConcurrent() >= poolSize) {
+            log.warn("jotd.bulkhead.admin-max-concurrent ({}) leaves no connections of the pool ({}) to reads",
+                    properties.adminMaxConcurrent(), poolSize);
+        }
+        this.read = new Bulkhead("read", properties.readLimit(poolSize), properties.readMaxWait(), meterRegistry);
+        this.admin = new Bulkhead("admin", properties.adminMaxConcurrent(), properties.adminMaxWait(), meterRegistry);
+        this.retryAfter = Long.toString(Math.max(1, properties.retryAfter().toSeconds()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Bulkhead bulkhead = isRead(request) ? read : admin;
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many concurrent requests, retry later.");
+            return;
+        }
+
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            async = request.isAsyncStarted();
+        } finally {
+            if (async) {
+                // The export streams after this thread returns; keep the slot until the response completes.
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        bulkhead.release();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                bulkhead.release();
+            }
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method)
+                || request.getRequestURI().equals(request.getContextPath() + JokeRestController.LOOKUP_PATH);
+    }
+}
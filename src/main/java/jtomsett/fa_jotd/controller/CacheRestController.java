@@ -0,0 +1,38 @@
+package jtomsett.fa_jotd.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.swagger.v3.oas.annotations.Operation;
+import jtomsett.fa_jotd.service.JokeLookupCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequiredArgsConstructor
+public class CacheRestController {
+
+    private final JokeLookupCache jokeLookupCache;
+    private final JokeResponseCache jokeResponseCache;
+
+    @Operation(summary = "Hit, miss and eviction counts for the in-process joke caches.")
+    @GetMapping("/cache/stats")
+    public Map<String, CacheStatistics> getCacheStats() {
+        Map<String, CacheStatistics> stats = new TreeMap<>();
+        jokeLookupCache.caches().forEach((name, cache) -> stats.put(name, CacheStatistics.of(cache)));
+        jokeResponseCache.caches().forEach((name, cache) -> stats.put(name, CacheStatistics.of(cache)));
+        return stats;
+    }
+
+    public record CacheStatistics(long size, long hits, long misses, double hitRate, long evictions) {
+
+        static CacheStatistics of(Cache<?, ?> cache) {
+            CacheStats stats = cache.stats();
+            return new CacheStatistics(cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                    stats.hitRate(), stats.evictionCount());
+        }
+    }
+}
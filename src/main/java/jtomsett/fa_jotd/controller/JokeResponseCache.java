@@ -0,0 +1,147 @@
+package jtomsett.fa_jotd.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jtomsett.fa_jotd.config.ResponseCacheProperties;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
+import jtomsett.fa_jotd.service.SingleFlight;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the serialized JSON, a gzip copy and the ETag of recently requested jokes so repeat
+ * reads of the same joke skip the service and Jackson entirely.
+ */
+@Component
+public class JokeResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final AsyncCache<Long, SerializedJoke> byId;
+    private final AsyncCache<LocalDate, SerializedJoke> byDate;
+    private final SingleFlight<Long, SerializedJoke> byIdLoads;
+    private final SingleFlight<LocalDate, SerializedJoke> byDateLoads;
+
+    public JokeResponseCache(ObjectMapper objectMapper, ResponseCacheProperties properties) {
+        this.objectMapper = objectMapper;
+        boolean enabled = properties.maxSize() > 0;
+        this.byId = Caffeine.newBuilder().maximumSize(properties.maxSize()).recordStats().buildAsync();
+        this.byDate = Caffeine.newBuilder().maximumSize(properties.maxSize()).recordStats().buildAsync();
+        this.byIdLoads = enabled ? new SingleFlight<>(byId, properties.maxWait()) : new SingleFlight<>(properties.maxWait());
+        this.byDateLoads = enabled ? new SingleFlight<>(byDate, properties.maxWait()) : new SingleFlight<>(properties.maxWait());
+    }
+
+    public Optional<SerializedJoke> getById(Long id, Supplier<Optional<Joke>> loader) {
+        return Optional.ofNullable(byIdLoads.get(id, key -> serialize(loader.get())));
+    }
+
+    public Optional<SerializedJoke> getByDate(LocalDate date, Supplier<Optional<Joke>> loader) {
+        return Optional.ofNullable(byDateLoads.get(date, key -> serialize(loader.get())));
+    }
+
+    public CompletableFuture<Optional<SerializedJoke>> getByIdAsync(Long id, Supplier<CompletableFuture<Optional<Joke>>> loader) {
+        return byIdLoads.getAsync(id, key -> loader.get().thenApply(this::serialize)).thenApply(Optional::ofNullable);
+    }
+
+    public CompletableFuture<Optional<SerializedJoke>> getByDateAsync(LocalDate date, Supplier<CompletableFuture<Optional<Joke>>> loader) {
+        return byDateLoads.getAsync(date, key -> loader.get().thenApply(this::serialize)).thenApply(Optional::ofNullable);
+    }
+
+    public Map<String, Cache<?, ?>> caches() {
+        return Map.of("jokes.response.id", byId.synchronous(), "jokes.response.date", byDate.synchronous());
+    }
+
+    public Map<String, SingleFlight<?, ?>> loads() {
+        return Map.of("jokes.response.id", byIdLoads, "jokes.response.date", byDateLoads);
+    }
+
+    public void invalidateAll() {
+        byId.synchronous().invalidateAll();
+        byDate.synchronous().invalidateAll();
+    }
+
+    // Runs after the service-level holders have applied the change, so a reload sees the new joke.
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokeChanged(JokeChangedEvent event) {
+        SerializedJoke cached = byId.synchronous().getIfPresent(event.id());
+        byId.synchronous().invalidate(event.id());
+        if (event.previousDate() != null) {
+            byDate.synchronous().invalidate(event.previousDate());
+        }
+        if (!event.isDeleted()) {
+            byDate.synchronous().invalidate(event.joke().getDate());
+        }
+        if (cached != null) {
+            byDate.synchronous().invalidate(cached.date());
+        } else if (event.isDeleted() && event.previousDate() == null) {
+            // Date unknown: only a scan finds the entry holding this id.
+            byDate.synchronous().asMap().values().removeIf(serialized -> Objects.equals(serialized.id(), event.id()));
+        }
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokesDeleted(JokesDeletedEvent event) {
+        byDate.synchronous().asMap().keySet().removeIf(event::covers);
+        byId.synchronous().asMap().values().removeIf(serialized -> event.covers(serialized.date()));
+    }
+
+    private SerializedJoke serialize(Optional<Joke> joke) {
+        if (joke.isEmpty()) {
+            return null;
+        }
+
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(joke.get());
+            String etag = "\"" + joke.get().getId() + "-" + DigestUtils.md5DigestAsHex(json) + "\"";
+            return new SerializedJoke(joke.get().getId(), joke.get().getDate(), json, gzip(json), etag);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize joke: " + joke.get().getId(), e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public record SerializedJoke(Long id, LocalDate date, byte[] json, byte[] gzip, String etag) {
+
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
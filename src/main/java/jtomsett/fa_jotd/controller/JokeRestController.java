@@ -1,5 +1,6 @@
 package jtomsett.fa_jotd.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -7,21 +8,52 @@ import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jtomsett.fa_jotd.config.ExportProperties;
+import jtomsett.fa_jotd.controller.JokeResponseCache.SerializedJoke;
 import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.BatchImportResult;
+import jtomsett.fa_jotd.dto.DeleteResult;
+import jtomsett.fa_jotd.dto.JokeLookupResult;
+import jtomsett.fa_jotd.dto.JokePage;
 import jtomsett.fa_jotd.exceptions.JokeNotFoundException;
 import jtomsett.fa_jotd.service.JokeService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class JokeRestController {
 
-    private final JokeService jokeService;
+    // A read sent as POST, so its body can hold more ids than a query string; BulkheadFilter counts it as a read.
+    static final String LOOKUP_PATH = "/jokes/lookup";
 
+    private final JokeService jokeService;
+    private final JokeResponseCache jokeResponseCache;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final ExportProperties exportProperties;
 
 
     @Operation(summary = "Find a joke by id or date.")
@@ -32,21 +64,106 @@ public class JokeRestController {
             @ApiResponse(responseCode = "404", description = "Joke not found for provided id.", content = @Content()),
     })
     @GetMapping("/joke")
-    public Joke getJoke(
+    public ResponseEntity<byte[]> getJoke(
             @Parameter(name = "id", description = "Highest precedent if available.", example = "12")
             @RequestParam(required = false) Long id,
             @Parameter(name = "date", description = "Lower precedent than id, defaults to today's date if neither are present.", example = "2025-02-24")
-            @RequestParam(required = false) LocalDate date) {
+            @RequestParam(required = false) LocalDate date,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        SerializedJoke joke;
         if (id != null){
-            return jokeService.getJokeById(id).orElseThrow(() -> new JokeNotFoundException(id));
+            joke = jokeResponseCache.getById(id, () -> jokeService.getJokeById(id))
+                    .orElseThrow(() -> new JokeNotFoundException(id));
+        } else if(date != null){
+            joke = jokeResponseCache.getByDate(date, () -> jokeService.getJokeByDate(date))
+                    .orElseThrow(() -> new JokeNotFoundException(date));
+        } else {
+            LocalDate today = LocalDate.now(clock);
+            joke = jokeResponseCache.getByDate(today, jokeService::getJokeOfTheDay)
+                    .orElseThrow(() -> new JokeNotFoundException(today));
         }
 
-        if(date != null){
-            return jokeService.getJokeByDate(date).orElseThrow(() -> new JokeNotFoundException(date));
-        }
+        LocalDateTime now = LocalDateTime.now(clock);
+        CacheControl cacheControl = CacheControl.maxAge(Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()))
+                .cachePublic();
+        return toResponse(joke, cacheControl, ifNoneMatch, acceptEncoding);
+    }
+
+    @Operation(summary = "Find a random joke, optionally within an inclusive date range.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully found a joke", content = {
+                    @Content(schema = @Schema(implementation = Joke.class), mediaType = "application/json")
+            }),
+            @ApiResponse(responseCode = "400", description = "Invalid range.", content = @Content()),
+            @ApiResponse(responseCode = "404", description = "No jokes in the range.", content = @Content())
+    })
+    @GetMapping("/joke/random")
+    public ResponseEntity<byte[]> getRandomJoke(
+            @Parameter(name = "from", description = "First date to consider.", example = "2025-01-01")
+            @RequestParam(required = false) LocalDate from,
+            @Parameter(name = "to", description = "Last date to consider.", example = "2025-12-31")
+            @RequestParam(required = false) LocalDate to,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Joke random = jokeService.getRandomJoke(from, to).orElseThrow(() -> new JokeNotFoundException(from, to));
+        SerializedJoke joke = jokeResponseCache.getByDate(random.getDate(), () -> Optional.of(random)).orElseThrow();
+
+        // Every call should draw again, so nothing downstream may keep the answer.
+        return toResponse(joke, CacheControl.noStore(), null, acceptEncoding);
+    }
+
+    @Operation(summary = "List jokes in an inclusive date range, in date order, one page at a time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of jokes, with a cursor when more remain."),
+            @ApiResponse(responseCode = "400", description = "Invalid range or page size.", content = @Content())
+    })
+    @GetMapping("/jokes")
+    public JokePage getJokes(
+            @Parameter(name = "from", description = "First date to include.", example = "2025-02-01")
+            @RequestParam LocalDate from,
+            @Parameter(name = "to", description = "Last date to include.", example = "2025-02-28")
+            @RequestParam LocalDate to,
+            @Parameter(name = "limit", description = "Maximum jokes per page.", example = "31")
+            @RequestParam(defaultValue = "31") int limit,
+            @Parameter(name = "after", description = "Cursor from the previous page's next field.", example = "2025-02-14")
+            @RequestParam(required = false) LocalDate after) {
+        return jokeService.getJokes(from, to, limit, after);
+    }
 
-        LocalDate today = LocalDate.now();
-        return jokeService.getJokeByDate(today).orElseThrow(() -> new JokeNotFoundException(today));
+    @Operation(summary = "Get many jokes by id at once, in the order requested, marking the ids that have no joke.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "A result per id, found or not found."),
+            @ApiResponse(responseCode = "400", description = "No ids, or more than a page of them.", content = @Content())
+    })
+    @GetMapping(value = "/jokes", params = "ids")
+    public List<JokeLookupResult> getJokesById(
+            @Parameter(name = "ids", description = "Ids to fetch.", example = "12,13,14")
+            @RequestParam List<Long> ids) {
+        return jokeService.getJokesById(ids);
+    }
+
+    @Operation(summary = "Get many jokes by id at once, for lists too long for a query string. Reads only, like GET /jokes?ids=.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "A result per id, found or not found."),
+            @ApiResponse(responseCode = "400", description = "No ids, or more than a page of them.", content = @Content())
+    })
+    @PostMapping(LOOKUP_PATH)
+    public List<JokeLookupResult> lookupJokes(@RequestBody List<Long> ids) {
+        return jokeService.getJokesById(ids);
+    }
+
+    @Operation(summary = "Search the text and description of jokes, best match first. Every word must match, the last letters of a word may be left off.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Matching jokes, best first."),
+            @ApiResponse(responseCode = "400", description = "Invalid page size.", content = @Content())
+    })
+    @GetMapping("/jokes/search")
+    public List<Joke> searchJokes(
+            @Parameter(name = "q", description = "Words to search for.", example = "chicken road")
+            @RequestParam String q,
+            @Parameter(name = "limit", description = "Maximum jokes to return.", example = "20")
+            @RequestParam(defaultValue = "20") int limit) {
+        return jokeService.searchJokes(q, limit);
     }
 
     @Operation(summary = "Add a new Joke.")
@@ -67,13 +184,59 @@ public class JokeRestController {
         return jokeService.addJoke(joke);
     }
 
+    @Operation(summary = "Add many jokes at once, reporting each one as inserted or conflicting.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import processed, see the status of each item."),
+            @ApiResponse(responseCode = "400", description = "Invalid joke provided.", content = @Content())
+    })
+    @PostMapping("/jokes/batch")
+    public List<BatchImportResult> addJokes(@RequestBody List<@Valid Joke> jokes) {
+        return jokeService.addJokes(jokes);
+    }
+
+    @Operation(summary = "Stream every joke, optionally within an inclusive date range, as newline-delimited JSON.")
+    @GetMapping(value = "/jokes/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportJokes(
+            @Parameter(name = "from", description = "First date to include.", example = "2025-01-01")
+            @RequestParam(required = false) LocalDate from,
+            @Parameter(name = "to", description = "Last date to include.", example = "2025-12-31")
+            @RequestParam(required = false) LocalDate to,
+            HttpServletRequest request) {
+        // The async request timeout (30s in Tomcat unless spring.mvc.async.request-timeout is set) would cut off
+        // a large export part way through.
+        AsyncWebRequest asyncRequest = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asyncRequest != null) {
+            asyncRequest.setTimeout(exportProperties.timeout().toMillis());
+        }
+        StreamingResponseBody body = outputStream -> {
+            BufferedOutputStream out = new BufferedOutputStream(outputStream);
+            try {
+                jokeService.exportJokes(from, to, joke -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(joke));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @Operation(summary = "Update an existing joke.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully updated the joke", content = {
                     @Content(schema = @Schema(implementation = Joke.class), mediaType = "application/json")
             }),
-            @ApiResponse(responseCode = "409", description = "Conflict with an existing joke.", content = @Content()),
-            @ApiResponse(responseCode = "400", description = "Invalid joke provided.", content = @Content()),
+            @ApiResponse(responseCode = "409", description = "Conflict with an existing joke, or the joke changed since the supplied version.", content = @Content()),
+            @ApiResponse(responseCode = "400", description = "Invalid joke provided, or no id or version.", content = @Content()),
             @ApiResponse(responseCode = "404", description = "Existing joke not found to update.", content = @Content())
     })
     @PutMapping("/joke/update")
@@ -81,9 +244,66 @@ public class JokeRestController {
         return jokeService.updateJoke(joke);
     }
 
-    @Operation(summary = "Delete a joke by id if it exists.")
+    @Operation(summary = "Delete a joke by id.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully deleted the joke"),
+            @ApiResponse(responseCode = "404", description = "Joke not found for provided id.", content = @Content())
+    })
     @DeleteMapping("/joke/delete/{id}")
-    public void deleteJoke(@PathVariable("id") Long id) {
-        jokeService.deleteJoke(id);
+    public DeleteResult deleteJoke(@PathVariable("id") Long id) {
+        int deleted = jokeService.deleteJoke(id);
+        if (deleted == 0) {
+            throw new JokeNotFoundException(id);
+        }
+        return new DeleteResult(deleted);
+    }
+
+    @Operation(summary = "Delete jokes by a list of ids or by an inclusive date range in a single statement.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Number of jokes deleted."),
+            @ApiResponse(responseCode = "400", description = "Neither ids nor a valid range provided.", content = @Content()),
+            @ApiResponse(responseCode = "404", description = "No jokes matched.", content = @Content())
+    })
+    @DeleteMapping("/jokes")
+    public DeleteResult deleteJokes(
+            @Parameter(name = "ids", description = "Ids to delete, takes precedence over a date range.", example = "12,13,14")
+            @RequestParam(required = false) List<Long> ids,
+            @Parameter(name = "from", description = "First date to delete.", example = "2025-01-01")
+            @RequestParam(required = false) LocalDate from,
+            @Parameter(name = "to", description = "Last date to delete.", example = "2025-01-31")
+            @RequestParam(required = false) LocalDate to) {
+        if (ids != null && !ids.isEmpty()) {
+            int deleted = jokeService.deleteJokes(ids);
+            if (deleted == 0) {
+                throw new JokeNotFoundException(ids);
+            }
+            return new DeleteResult(deleted);
+        }
+
+        int deleted = jokeService.deleteJokes(from, to);
+        if (deleted == 0) {
+            throw new JokeNotFoundException(from, to);
+        }
+        return new DeleteResult(deleted);
+    }
+
+    private ResponseEntity<byte[]> toResponse(SerializedJoke joke, CacheControl cacheControl, String ifNoneMatch, String acceptEncoding) {
+        if (joke.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(joke.etag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(joke.etag())
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+        if (AcceptEncoding.allowsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(joke.gzip());
+        }
+        return response.body(joke.json());
     }
 }
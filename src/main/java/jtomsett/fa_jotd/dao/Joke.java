@@ -2,7 +2,12 @@ package jtomsett.fa_jotd.dao;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -13,6 +18,7 @@ import java.util.Objects;
 
 
 @Entity
+@Table(indexes = @Index(name = "ux_joke_date", columnList = "date", unique = true))
 @Data
 @NoArgsConstructor
 public class Joke {
@@ -23,7 +29,9 @@ public class Joke {
     }
 
     @Id
-    private @GeneratedValue Long id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "joke_seq")
+    @SequenceGenerator(name = "joke_seq", sequenceName = "joke_seq", allocationSize = 50)
+    private Long id;
 
     @NotBlank(message = "Joke is required.")
     private String joke;
@@ -33,6 +41,9 @@ public class Joke {
 
     private String description;
 
+    @Version
+    private Long version;
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
@@ -0,0 +1,53 @@
+package jtomsett.fa_jotd.dao;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * One row of the change feed other nodes tail to keep their caches and indexes current.
+ * Identity ids follow insert order across nodes, which a pooled sequence would not.
+ */
+@Entity
+@Table(name = "joke_change", indexes = @Index(name = "ix_joke_change_created_at", columnList = "createdAt"))
+@Data
+@NoArgsConstructor
+public class JokeChange {
+
+    public enum Kind {
+        CHANGED, DELETED, RANGE_DELETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 36)
+    private String node;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Kind kind;
+
+    private Long jokeId;
+
+    private LocalDate previousDate;
+
+    private LocalDate fromDate;
+
+    private LocalDate toDate;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
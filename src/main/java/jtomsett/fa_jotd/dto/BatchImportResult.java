@@ -0,0 +1,26 @@
+package jtomsett.fa_jotd.dto;
+
+import jtomsett.fa_jotd.dao.Joke;
+
+/**
+ * Outcome of one joke in a batch import, reported in request order.
+ *
+ * @param index  position of the joke in the request
+ * @param status whether the joke was inserted or conflicted with an existing date
+ * @param joke   the saved joke when inserted, otherwise the joke as submitted
+ */
+public record BatchImportResult(int index, Status status, Joke joke) {
+
+    public enum Status {
+        INSERTED,
+        CONFLICT
+    }
+
+    public static BatchImportResult inserted(int index, Joke joke) {
+        return new BatchImportResult(index, Status.INSERTED, joke);
+    }
+
+    public static BatchImportResult conflict(int index, Joke joke) {
+        return new BatchImportResult(index, Status.CONFLICT, joke);
+    }
+}
@@ -0,0 +1,7 @@
+package jtomsett.fa_jotd.dto;
+
+/**
+ * @param deleted number of jokes removed
+ */
+public record DeleteResult(int deleted) {
+}
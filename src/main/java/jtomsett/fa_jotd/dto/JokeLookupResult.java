@@ -0,0 +1,26 @@
+package jtomsett.fa_jotd.dto;
+
+import jtomsett.fa_jotd.dao.Joke;
+
+/**
+ * Outcome of one id in a multi-get, reported in request order.
+ *
+ * @param id     the id as requested
+ * @param status whether a joke has that id
+ * @param joke   the joke when found, otherwise {@code null}
+ */
+public record JokeLookupResult(Long id, Status status, Joke joke) {
+
+    public enum Status {
+        FOUND,
+        NOT_FOUND
+    }
+
+    public static JokeLookupResult found(Joke joke) {
+        return new JokeLookupResult(joke.getId(), Status.FOUND, joke);
+    }
+
+    public static JokeLookupResult notFound(Long id) {
+        return new JokeLookupResult(id, Status.NOT_FOUND, null);
+    }
+}
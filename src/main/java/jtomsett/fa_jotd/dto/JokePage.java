@@ -0,0 +1,15 @@
+package jtomsett.fa_jotd.dto;
+
+import jtomsett.fa_jotd.dao.Joke;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One page of a date-ordered listing.
+ *
+ * @param jokes the jokes on this page in date order
+ * @param next  cursor to pass as {@code after} for the next page, null on the last page
+ */
+public record JokePage(List<Joke> jokes, LocalDate next) {
+}
@@ -0,0 +1,35 @@
+package jtomsett.fa_jotd.event;
+
+import jtomsett.fa_jotd.dao.Joke;
+
+import java.time.LocalDate;
+
+/**
+ * Published by the service after a joke is added, updated or deleted.
+ *
+ * @param id           id of the joke that changed
+ * @param previousDate date the joke had before the change, null for a new joke or when unknown
+ * @param joke         the joke as it is now, null when it has been deleted
+ */
+public record JokeChangedEvent(Long id, LocalDate previousDate, Joke joke) {
+
+    public static JokeChangedEvent added(Joke joke) {
+        return new JokeChangedEvent(joke.getId(), null, joke);
+    }
+
+    public static JokeChangedEvent updated(LocalDate previousDate, Joke joke) {
+        return new JokeChangedEvent(joke.getId(), previousDate, joke);
+    }
+
+    public static JokeChangedEvent deleted(Long id) {
+        return new JokeChangedEvent(id, null, null);
+    }
+
+    public static JokeChangedEvent deleted(Long id, LocalDate date) {
+        return new JokeChangedEvent(id, date, null);
+    }
+
+    public boolean isDeleted() {
+        return joke == null;
+    }
+}
@@ -0,0 +1,14 @@
+package jtomsett.fa_jotd.event;
+
+import java.time.LocalDate;
+
+/**
+ * Published by the service after every joke in an inclusive date range was deleted in one statement,
+ * without the ids of the removed jokes being known.
+ */
+public record JokesDeletedEvent(LocalDate from, LocalDate to) {
+
+    public boolean covers(LocalDate date) {
+        return date != null && !date.isBefore(from) && !date.isAfter(to);
+    }
+}
@@ -0,0 +1,10 @@
+package jtomsett.fa_jotd.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidRangeException extends RuntimeException {
+
+    public InvalidRangeException(String message) {super(message);}
+}
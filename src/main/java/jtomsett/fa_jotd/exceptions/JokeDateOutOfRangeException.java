@@ -0,0 +1,13 @@
+package jtomsett.fa_jotd.exceptions;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A joke dated further from the others than the storage can hold; only the in-memory storage has such a limit.
+ */
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class JokeDateOutOfRangeException extends InvalidDataAccessApiUsageException {
+    public JokeDateOutOfRangeException(String message) {super(message);}
+}
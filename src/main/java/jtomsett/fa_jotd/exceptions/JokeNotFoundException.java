@@ -4,6 +4,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 import java.time.LocalDate;
+import java.util.Collection;
 
 @ResponseStatus(value = HttpStatus.NOT_FOUND)
 public class JokeNotFoundException extends RuntimeException {
@@ -16,4 +17,12 @@ public class JokeNotFoundException extends RuntimeException {
         super("Could not find joke by date: " + date);
     }
 
+    public JokeNotFoundException(Collection<Long> ids) {
+        super("Could not find jokes by ids: " + ids);
+    }
+
+    public JokeNotFoundException(LocalDate from, LocalDate to) {
+        super("Could not find jokes between: " + from + " and " + to);
+    }
+
 }
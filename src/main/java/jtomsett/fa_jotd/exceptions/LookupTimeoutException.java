@@ -0,0 +1,14 @@
+package jtomsett.fa_jotd.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class LookupTimeoutException extends RuntimeException {
+
+    public LookupTimeoutException(Object key, Duration waited) {
+        super("Gave up after " + waited.toMillis() + "ms waiting for another lookup of: " + key);
+    }
+}
@@ -0,0 +1,12 @@
+package jtomsett.fa_jotd.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class StaleJokeException extends RuntimeException {
+
+    public StaleJokeException(Long id) {
+        super("Joke was changed by someone else, reload it and try again: " + id);
+    }
+}
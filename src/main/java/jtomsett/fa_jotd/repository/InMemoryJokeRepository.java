@@ -0,0 +1,482 @@
+package jtomsett.fa_jotd.repository;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.exceptions.JokeDateOutOfRangeException;
+import jtomsett.fa_jotd.util.LongObjectMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * {@link JokeRepository} held entirely in memory, selected with {@code jotd.storage=memory}.
+ * <p>
+ * Jokes sit in pages of days indexed by {@code LocalDate.toEpochDay()}, with primitive long-keyed maps for
+ * ids. Both live in an immutable {@link State}: reads take the current state without locking, and writes
+ * copy the pages and id segments they change under a lock, then publish a new state sharing the rest.
+ * <p>
+ * Apart from {@link #findById}, reads return the stored instances, which are shared and must not be
+ * modified. {@code findById} returns a copy because callers edit the result and save it back, as they would
+ * a managed entity. Writes store a copy of the joke they are given, and set its id and version once the
+ * write is published.
+ * Conflicts and null ids surface as the same exceptions the JPA repository throws. Unlike JPA, the dates
+ * may span at most {@link #MAX_SPAN_DAYS}; a joke beyond that fails with a {@link JokeDateOutOfRangeException}.
+ * <p>
+ * Given a {@link JokeJournal}, the repository rebuilds its jokes from the journal on construction and appends
+ * every write to it before publishing the new state; a write the journal rejects is not applied.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "jotd.storage", havingValue = "memory")
+public class InMemoryJokeRepository implements JokeRepository {
+
+    // About 11,000 years of days; keeps the page table at 4096 entries.
+    public static final int MAX_SPAN_DAYS = 1 << 22;
+    // Pages of 1024 days and 64 id segments: a write copies the few it touches, not the whole store.
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+    private static final int SEGMENT_BITS = 6;
+
+    private final Object writeLock = new Object();
+    private final JokeJournal journal;
+    private volatile State state = State.EMPTY;
+    private long nextId = 1;
+
+    public InMemoryJokeRepository() {
+        this.journal = null;
+    }
+
+    public InMemoryJokeRepository(JokeJournal journal) {
+        this.journal = journal;
+        Writer writer = new Writer(State.EMPTY);
+        nextId = journal.recover(writer::apply);
+        state = writer.build();
+    }
+
+    @Override
+    public Optional<Joke> findByDate(LocalDate date) {
+        return Optional.ofNullable(state.get(date.toEpochDay()));
+    }
+
+    @Override
+    public Optional<Joke> findById(Long id) {
+        Joke joke = state.byId(requireId(id));
+        return joke == null ? Optional.empty() : Optional.of(copy(joke));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return state.byId(requireId(id)) != null;
+    }
+
+    @Override
+    public Iterable<Joke> findAll() {
+        List<Joke> jokes = new ArrayList<>();
+        state.forEach(Long.MIN_VALUE, Long.MAX_VALUE, jokes::add);
+        return jokes;
+    }
+
+    @Override
+    public Iterable<Joke> findAllById(Iterable<Long> ids) {
+        State current = state;
+        List<Joke> jokes = new ArrayList<>();
+        for (Long id : ids) {
+            Joke joke = current.byId(id);
+            if (joke != null) {
+                jokes.add(joke);
+            }
+        }
+        return jokes;
+    }
+
+    @Override
+    public long count() {
+        return state.size();
+    }
+
+    @Override
+    public List<Joke> findByDateBetweenOrderByDateAsc(LocalDate from, LocalDate to, Limit limit) {
+        int max = limit.isLimited() ? limit.max() : Integer.MAX_VALUE;
+        List<Joke> jokes = new ArrayList<>(Math.min(max, 64));
+        state.forEach(from.toEpochDay(), to.toEpochDay(), joke -> {
+            if (jokes.size() < max) {
+                jokes.add(joke);
+            }
+        });
+        return jokes;
+    }
+
+    @Override
+    public List<LocalDate> findExistingDates(Collection<LocalDate> dates) {
+        State current = state;
+        return dates.stream().distinct().filter(date -> current.get(date.toEpochDay()) != null).toList();
+    }
+
+    @Override
+    public void forEachJoke(LocalDate from, LocalDate to, Consumer<Joke> action) {
+        state.forEach(from == null ? Long.MIN_VALUE : from.toEpochDay(), to == null ? Long.MAX_VALUE : to.toEpochDay(), action);
+    }
+
+    @Override
+    public <S extends Joke> S save(S joke) {
+        Joke stored;
+        synchronized (writeLock) {
+            long firstId = nextId;
+            Writer writer = new Writer(state);
+            try {
+                stored = writer.save(joke);
+                publish(writer);
+            } catch (RuntimeException e) {
+                nextId = firstId;
+                throw e;
+            }
+        }
+        assign(joke, stored);
+        return joke;
+    }
+
+    @Override
+    public <S extends Joke> S saveAndFlush(S joke) {
+        return save(joke);
+    }
+
+    @Override
+    public <S extends Joke> Iterable<S> saveAll(Iterable<S> jokes) {
+        List<S> saved = new ArrayList<>();
+        List<Joke> stored = new ArrayList<>();
+        synchronized (writeLock) {
+            // A conflict anywhere leaves the published state untouched, like a rolled-back transaction.
+            long firstId = nextId;
+            Writer writer = new Writer(state);
+            try {
+                for (S joke : jokes) {
+                    stored.add(writer.save(joke));
+                    saved.add(joke);
+                }
+                publish(writer);
+            } catch (RuntimeException e) {
+                nextId = firstId;
+                throw e;
+            }
+        }
+        for (int i = 0; i < saved.size(); i++) {
+            assign(saved.get(i), stored.get(i));
+        }
+        return saved;
+    }
+
+    @Override
+    public void flush() {
+        // Writes are applied immediately.
+    }
+
+    @Override
+    public List<JokeDate> deleteByIds(Collection<Long> ids) {
+        synchronized (writeLock) {
+            Writer writer = new Writer(state);
+            List<JokeDate> deleted = new ArrayList<>();
+            for (Long id : new HashSet<>(ids)) {
+                Joke joke = writer.byId(id);
+                if (writer.remove(joke)) {
+                    deleted.add(new JokeDate(joke.getId(), joke.getDate()));
+                }
+            }
+            publish(writer);
+            return deleted;
+        }
+    }
+
+    @Override
+    public int deleteByDateRange(LocalDate from, LocalDate to) {
+        synchronized (writeLock) {
+            Writer writer = new Writer(state);
+            List<Joke> matching = new ArrayList<>();
+            state.forEach(from.toEpochDay(), to.toEpochDay(), matching::add);
+            matching.forEach(writer::remove);
+            publish(writer);
+            return matching.size();
+        }
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        deleteByIds(Set.of(requireId(id)));
+    }
+
+    @Override
+    public void delete(Joke joke) {
+        if (joke.getId() != null) {
+            deleteByIds(Set.of(joke.getId()));
+        }
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        List<Long> list = new ArrayList<>();
+        ids.forEach(list::add);
+        deleteByIds(list);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Joke> jokes) {
+        List<Long> ids = new ArrayList<>();
+        jokes.forEach(joke -> ids.add(joke.getId()));
+        deleteByIds(ids.stream().filter(Objects::nonNull).toList());
+    }
+
+    @Override
+    public void deleteAll() {
+        synchronized (writeLock) {
+            Writer writer = new Writer(state);
+            state.forEach(Long.MIN_VALUE, Long.MAX_VALUE, writer::remove);
+            publish(writer);
+        }
+    }
+
+    /**
+     * Snapshots the current jokes into the journal and drops the records the snapshot replaces.
+     * Does nothing without a journal or when nothing was written since the last snapshot.
+     */
+    public void compact() {
+        if (journal == null || journal.records() == 0) {
+            return;
+        }
+        State snapshot;
+        long generation;
+        long snapshotNextId;
+        synchronized (writeLock) {
+            generation = journal.rollOver();
+            snapshot = state;
+            snapshotNextId = nextId;
+        }
+        // The snapshot is immutable, so writes carry on into the new generation while it is written out.
+        journal.writeSnapshot(generation, snapshotNextId, action -> snapshot.forEach(Long.MIN_VALUE, Long.MAX_VALUE, action));
+    }
+
+    // Caller holds writeLock.
+    private void publish(Writer writer) {
+        if (writer.changes.isEmpty()) {
+            return;
+        }
+        if (journal != null) {
+            journal.append(writer.changes, nextId);
+        }
+        state = writer.build();
+    }
+
+    // Only a published write hands its id and version back to the caller's joke.
+    private static void assign(Joke joke, Joke stored) {
+        joke.setId(stored.getId());
+        joke.setVersion(stored.getVersion());
+    }
+
+    private static Joke copy(Joke joke) {
+        Joke copy = new Joke(joke.getJoke(), joke.getDate());
+        copy.setId(joke.getId());
+        copy.setDescription(joke.getDescription());
+        copy.setVersion(joke.getVersion());
+        return copy;
+    }
+
+    private static Joke day(long basePage, Joke[][] pages, long epochDay) {
+        long page = (epochDay >> PAGE_SHIFT) - basePage;
+        if (page < 0 || page >= pages.length) {
+            return null;
+        }
+        Joke[] days = pages[(int) page];
+        return days == null ? null : days[(int) (epochDay & PAGE_MASK)];
+    }
+
+    private static long requireId(Long id) {
+        if (id == null) {
+            throw new InvalidDataAccessApiUsageException("The given id must not be null");
+        }
+        return id;
+    }
+
+    private static int segment(long id) {
+        return (int) ((id * 0xC2B2AE3D27D4EB4FL) >>> (Long.SIZE - SEGMENT_BITS));
+    }
+
+    /**
+     * Published snapshot; never modified once visible to readers.
+     */
+    private record State(long basePage, Joke[][] pages, LongObjectMap<Joke>[] segments, int size) {
+
+        static final State EMPTY = new State(0, new Joke[0][], emptySegments(), 0);
+
+        Joke get(long epochDay) {
+            return day(basePage, pages, epochDay);
+        }
+
+        Joke byId(long id) {
+            return segments[segment(id)].get(id);
+        }
+
+        void forEach(long fromDay, long toDay, Consumer<? super Joke> action) {
+            long first = Math.max(fromDay >> PAGE_SHIFT, basePage);
+            long last = Math.min(toDay >> PAGE_SHIFT, basePage + pages.length - 1);
+            for (long page = first; page <= last; page++) {
+                Joke[] days = pages[(int) (page - basePage)];
+                if (days == null) {
+                    continue;
+                }
+                int from = page == fromDay >> PAGE_SHIFT ? (int) (fromDay & PAGE_MASK) : 0;
+                int to = page == toDay >> PAGE_SHIFT ? (int) (toDay & PAGE_MASK) : PAGE_MASK;
+                for (int i = from; i <= to; i++) {
+                    if (days[i] != null) {
+                        action.accept(days[i]);
+                    }
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static LongObjectMap<Joke>[] emptySegments() {
+            LongObjectMap<Joke>[] segments = new LongObjectMap[1 << SEGMENT_BITS];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = new LongObjectMap<>(0);
+            }
+            return segments;
+        }
+    }
+
+    /**
+     * Changes a {@link State} for a single write before it is published. Shares the state's pages and id
+     * segments, and copies each one the first time the write touches it.
+     */
+    private final class Writer {
+
+        private long basePage;
+        private Joke[][] pages;
+        private final LongObjectMap<Joke>[] segments;
+        private final boolean[] ownedSegments = new boolean[1 << SEGMENT_BITS];
+        private final Set<Joke[]> ownedPages = Collections.newSetFromMap(new IdentityHashMap<>());
+        private int size;
+        private final List<JokeJournal.Change> changes = new ArrayList<>();
+
+        Writer(State state) {
+            basePage = state.basePage;
+            pages = state.pages.clone();
+            segments = state.segments.clone();
+            size = state.size;
+        }
+
+        Joke byId(long id) {
+            return segments[segment(id)].get(id);
+        }
+
+        /**
+         * @return the copy stored, with its id and version set; {@code joke} itself is left as it is
+         */
+        Joke save(Joke joke) {
+            Joke existing = joke.getId() == null ? null : byId(joke.getId());
+            if (existing != null && joke.getVersion() != null && !joke.getVersion().equals(existing.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(Joke.class, joke.getId());
+            }
+
+            Joke onDate = day(basePage, pages, joke.getDate().toEpochDay());
+            if (onDate != null && onDate != existing) {
+                throw new DataIntegrityViolationException("Unique index ux_joke_date violated: " + joke.getDate());
+            }
+
+            Joke stored = copy(joke);
+            if (stored.getId() == null) {
+                stored.setId(nextId++);
+            } else {
+                nextId = Math.max(nextId, stored.getId() + 1);
+            }
+            stored.setVersion(existing == null ? 0L : existing.getVersion() + 1);
+            change(new JokeJournal.Change(stored.getId(), stored));
+            return stored;
+        }
+
+        boolean remove(Joke joke) {
+            if (joke == null) {
+                return false;
+            }
+            change(new JokeJournal.Change(joke.getId(), null));
+            return true;
+        }
+
+        /**
+         * Stores {@code change.joke()} under its id, replacing whatever the id held, or removes the id.
+         * Does no checks: the change was either checked already or is being replayed.
+         */
+        void apply(JokeJournal.Change change) {
+            Joke existing = ownSegment(change.id()).remove(change.id());
+            if (existing != null) {
+                setDay(existing.getDate().toEpochDay(), null);
+                size--;
+            }
+            Joke joke = change.joke();
+            if (joke != null) {
+                setDay(joke.getDate().toEpochDay(), joke);
+                ownSegment(change.id()).put(change.id(), joke);
+                size++;
+            }
+        }
+
+        State build() {
+            return size == 0 ? State.EMPTY : new State(basePage, pages, segments, size);
+        }
+
+        private void change(JokeJournal.Change change) {
+            apply(change);
+            changes.add(change);
+        }
+
+        private LongObjectMap<Joke> ownSegment(long id) {
+            int segment = segment(id);
+            if (!ownedSegments[segment]) {
+                segments[segment] = segments[segment].copy();
+                ownedSegments[segment] = true;
+            }
+            return segments[segment];
+        }
+
+        private void setDay(long epochDay, Joke joke) {
+            long page = epochDay >> PAGE_SHIFT;
+            if (pages.length == 0) {
+                basePage = page;
+                pages = new Joke[1][];
+            } else if (page < basePage || page >= basePage + pages.length) {
+                long first = Math.min(basePage, page);
+                long end = Math.max(basePage + pages.length, page + 1);
+                if ((end - first) << PAGE_SHIFT > MAX_SPAN_DAYS) {
+                    throw new JokeDateOutOfRangeException("Joke dates may span at most " + MAX_SPAN_DAYS + " days: " + LocalDate.ofEpochDay(epochDay));
+                }
+                Joke[][] grown = new Joke[(int) (end - first)][];
+                System.arraycopy(pages, 0, grown, (int) (basePage - first), pages.length);
+                basePage = first;
+                pages = grown;
+            }
+
+            int index = (int) (page - basePage);
+            Joke[] days = pages[index];
+            if (days == null) {
+                days = new Joke[PAGE_MASK + 1];
+            } else if (!ownedPages.contains(days)) {
+                days = days.clone();
+            }
+            ownedPages.add(days);
+            pages[index] = days;
+            days[(int) (epochDay & PAGE_MASK)] = joke;
+        }
+    }
+}
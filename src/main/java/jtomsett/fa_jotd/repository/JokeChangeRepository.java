@@ -0,0 +1,31 @@
+package jtomsett.fa_jotd.repository;
+
+import jtomsett.fa_jotd.dao.JokeChange;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface JokeChangeRepository extends CrudRepository<JokeChange, Long> {
+
+    @Transactional(readOnly = true)
+    List<JokeChange> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+    @Transactional(readOnly = true)
+    List<JokeChange> findByIdInOrderByIdAsc(Collection<Long> ids);
+
+    @Transactional(readOnly = true)
+    @Query("select coalesce(max(c.id), 0) from JokeChange c")
+    long findMaxId();
+
+    @Transactional
+    @Modifying
+    @Query("delete from JokeChange c where c.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,9 @@
+package jtomsett.fa_jotd.repository;
+
+import java.time.LocalDate;
+
+/**
+ * The id and date of a stored joke, without its text.
+ */
+public record JokeDate(Long id, LocalDate date) {
+}
@@ -0,0 +1,480 @@
+package jtomsett.fa_jotd.repository;
+
+import jtomsett.fa_jotd.dao.Joke;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of the changes made to an {@link InMemoryJokeRepository}, so its jokes survive a restart.
+ * <p>
+ * The directory holds numbered generations. {@code journal-N.log} is memory-mapped, and every repository
+ * write appends one record to it: {@code int length, int CRC32C, payload}, where the payload holds the next
+ * unused id after the write and lists the jokes the write stored or removed. The length goes in last, so a
+ * record cut short by a crash reads as the end of the journal, and the checksum catches pages the OS only
+ * partly wrote. {@code snapshot-N.dat} holds every joke as of the start of generation N, in the same record
+ * format.
+ * <p>
+ * {@link #recover} loads the newest snapshot and replays the journals from its generation on.
+ * Compaction rolls over to a new generation, writes its snapshot and deletes the older files.
+ * <p>
+ * Records reach the page cache as soon as they are appended, so they survive the process dying.
+ * {@link Fsync} decides when they are also forced to disk, to survive the machine going down.
+ * Appends are expected to be serialized by the repository's write lock.
+ */
+@Slf4j
+public final class JokeJournal implements Closeable {
+
+    /**
+     * When appended records are forced to disk.
+     */
+    public enum Fsync {
+        /** Before each write returns: nothing acknowledged is lost, at the cost of a disk flush per write. */
+        ALWAYS,
+        /** When {@link #force()} is called, e.g. on a schedule: a crash of the machine loses at most one interval. */
+        INTERVAL,
+        /** Only on rollover and close; the OS writes pages back in its own time. */
+        NEVER
+    }
+
+    record Change(long id, Joke joke) {
+    }
+
+    private static final int MAGIC = 0x4A4F5444; // "JOTD"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int SNAPSHOT_CHANGES_PER_RECORD = 1024;
+    private static final Pattern FILE = Pattern.compile("(journal|snapshot)-(\\d+)\\.(log|dat)");
+
+    private final Path directory;
+    private final Fsync fsync;
+    private final int mapBytes;
+
+    // Encodes appended records; guarded by this. Snapshots encode into their own buffer.
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long generation;
+    private long position;
+    private long records;
+    private boolean dirty;
+
+    /**
+     * @param mapBytes how much of the journal file is mapped at a time; the file grows by this much when full
+     */
+    public JokeJournal(Path directory, Fsync fsync, int mapBytes) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.mapBytes = mapBytes;
+    }
+
+    /**
+     * Passes the newest snapshot and every later journal record to {@code apply}, oldest first, then opens the
+     * current journal for appending. A torn record at the end of the current journal is dropped.
+     *
+     * @return the highest next unused id recorded in the snapshot and the replayed records, or 1 without any.
+     * Ids freed by deletes are never handed out again.
+     */
+    public synchronized long recover(Consumer<Change> apply) {
+        try {
+            Files.createDirectories(directory);
+            TreeMap<Long, Path> journals = new TreeMap<>();
+            TreeMap<Long, Path> snapshots = new TreeMap<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Matcher matcher = FILE.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        (matcher.group(1).equals("journal") ? journals : snapshots).put(Long.parseLong(matcher.group(2)), file);
+                    } else if (file.toString().endsWith(".tmp")) {
+                        Files.delete(file);
+                    }
+                }
+            }
+
+            long[] nextId = {1};
+            long snapshot = 0;
+            if (!snapshots.isEmpty()) {
+                snapshot = snapshots.lastKey();
+                readSnapshot(snapshots.lastEntry().getValue(), apply, nextId);
+            }
+            generation = journals.isEmpty() ? snapshot : Math.max(journals.lastKey(), snapshot);
+            long end = -1;
+            for (var journal : journals.tailMap(snapshot, true).entrySet()) {
+                boolean current = journal.getKey() == generation;
+                long replayed = replay(journal.getValue(), apply, current, nextId);
+                if (current) {
+                    end = replayed;
+                }
+            }
+            open(journalFile(generation), end);
+            return nextId[0];
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot recover journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends one record holding {@code changes} and the repository's next unused id after them.
+     * Nothing is appended if encoding or mapping fails.
+     */
+    public synchronized void append(List<Change> changes, long nextId) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (channel == null) {
+            throw new DataAccessResourceFailureException("Journal in " + directory + " is closed");
+        }
+        scratch = encode(scratch, changes, nextId);
+        ByteBuffer payload = scratch;
+        int size = RECORD_HEADER_BYTES + payload.remaining();
+        try {
+            if (mapped == null || mapped.remaining() < size) {
+                map(size);
+            }
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot extend journal " + journalFile(generation), e);
+        }
+        int start = mapped.position();
+        mapped.putInt(start + 4, checksum(payload));
+        mapped.put(start + RECORD_HEADER_BYTES, payload, payload.position(), payload.remaining());
+        mapped.putInt(start, payload.remaining());
+        mapped.position(start + size);
+        position += size;
+        records++;
+        if (fsync == Fsync.ALWAYS) {
+            mapped.force(start, size);
+        } else {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forces records appended since the last call to disk. Appends wait for it, as a roll-over or close
+     * would otherwise truncate the file under the mapping being forced.
+     */
+    public synchronized void force() {
+        if (!dirty || mapped == null) {
+            return;
+        }
+        dirty = false;
+        mapped.force();
+    }
+
+    /**
+     * Number of records in the current generation's journal.
+     */
+    public synchronized long records() {
+        return records;
+    }
+
+    /**
+     * Closes the current journal and starts the next generation. Must be followed by
+     * {@link #writeSnapshot} for the returned generation, with the state as of this call.
+     */
+    public synchronized long rollOver() {
+        try {
+            closeJournal();
+            generation++;
+            open(journalFile(generation), -1);
+            return generation;
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot roll over journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Writes the snapshot for {@code generation} and then deletes the snapshots and journals it replaces.
+     * Runs alongside {@link #append}, which it does not block.
+     */
+    public void writeSnapshot(long generation, long nextId, Consumer<Consumer<Joke>> jokes) {
+        Path file = snapshotFile(generation);
+        Path tmp = directory.resolve(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + 8).putInt(MAGIC).putInt(FORMAT).putLong(nextId).flip();
+            write(out, header);
+            ByteBuffer[] buffer = {ByteBuffer.allocate(4096)};
+            List<Change> chunk = new ArrayList<>(SNAPSHOT_CHANGES_PER_RECORD);
+            List<IOException> failure = new ArrayList<>(1);
+            jokes.accept(joke -> {
+                chunk.add(new Change(joke.getId(), joke));
+                if (chunk.size() == SNAPSHOT_CHANGES_PER_RECORD && failure.isEmpty()) {
+                    writeRecord(out, buffer, chunk, nextId, failure);
+                }
+            });
+            writeRecord(out, buffer, chunk, nextId, failure);
+            if (!failure.isEmpty()) {
+                throw failure.get(0);
+            }
+            out.force(true);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot write snapshot " + file, e);
+        }
+
+        try {
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path old : files.toList()) {
+                    Matcher matcher = FILE.matcher(old.getFileName().toString());
+                    if (matcher.matches() && Long.parseLong(matcher.group(2)) < generation) {
+                        Files.delete(old);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot replace old journal files in " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            closeJournal();
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Cannot close journal " + journalFile(generation), e);
+        }
+    }
+
+    private void open(Path file, long end) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (end < 0) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(FORMAT).flip();
+            write(channel, header);
+            end = HEADER_BYTES;
+            records = 0;
+        } else {
+            // Drop anything after the last good record, so a later append cannot line up with stale bytes.
+            channel.truncate(end);
+        }
+        position = end;
+        mapped = null;
+    }
+
+    private void map(int size) throws IOException {
+        if (mapped != null && fsync != Fsync.NEVER) {
+            mapped.force();
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(mapBytes, size));
+    }
+
+    private void closeJournal() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        if (mapped != null) {
+            mapped.force();
+            mapped = null;
+        }
+        channel.truncate(position);
+        channel.force(true);
+        channel.close();
+        channel = null;
+        dirty = false;
+    }
+
+    /**
+     * @return the offset after the last good record
+     */
+    private long replay(Path file, Consumer<Change> apply, boolean current, long[] nextId) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (in.size() < HEADER_BYTES) {
+                if (current) {
+                    return -1;
+                }
+                throw new IOException("Journal " + file + " has no header");
+            }
+            ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            checkHeader(buffer, file);
+            long count = 0;
+            while (true) {
+                int start = buffer.position();
+                ByteBuffer payload = nextRecord(buffer);
+                if (payload == null) {
+                    if (buffer.position() != start && !current) {
+                        throw new IOException("Journal " + file + " is damaged at offset " + start);
+                    }
+                    if (buffer.position() != start) {
+                        log.warn("Dropping torn record at offset {} of journal {}", start, file);
+                    }
+                    records = count;
+                    return start;
+                }
+                nextId[0] = Math.max(nextId[0], decode(payload, apply));
+                count++;
+            }
+        }
+    }
+
+    private void readSnapshot(Path file, Consumer<Change> apply, long[] nextId) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            checkHeader(buffer, file);
+            nextId[0] = Math.max(nextId[0], buffer.getLong());
+            while (buffer.hasRemaining()) {
+                ByteBuffer payload = nextRecord(buffer);
+                if (payload == null) {
+                    throw new IOException("Snapshot " + file + " is damaged at offset " + buffer.position());
+                }
+                nextId[0] = Math.max(nextId[0], decode(payload, apply));
+            }
+        }
+    }
+
+    private static void checkHeader(ByteBuffer buffer, Path file) throws IOException {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException(file + " is not a journal file");
+        }
+        int format = buffer.getInt();
+        if (format != FORMAT) {
+            throw new IOException(file + " is a format " + format + " journal file, expected " + FORMAT);
+        }
+    }
+
+    /**
+     * @return the next record's payload, or {@code null} at the end of the records. The buffer is left after the
+     * record, or moved past the start of a damaged one.
+     */
+    private static ByteBuffer nextRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < RECORD_HEADER_BYTES) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length == 0) {
+            buffer.position(start);
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(buffer.position(), length);
+        if (checksum(payload) != checksum) {
+            return null;
+        }
+        buffer.position(buffer.position() + length);
+        return payload;
+    }
+
+    private static void writeRecord(FileChannel out, ByteBuffer[] buffer, List<Change> chunk, long nextId, List<IOException> failure) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        buffer[0] = encode(buffer[0], chunk, nextId);
+        ByteBuffer payload = buffer[0];
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES).putInt(payload.remaining()).putInt(checksum(payload)).flip();
+        try {
+            write(out, header);
+            write(out, payload);
+        } catch (IOException e) {
+            failure.add(e);
+        }
+        chunk.clear();
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return the payload, flipped: {@code buffer}, or a larger buffer if the changes did not fit in it
+     */
+    private static ByteBuffer encode(ByteBuffer buffer, List<Change> changes, long nextId) {
+        while (true) {
+            try {
+                buffer.clear().putLong(nextId).putInt(changes.size());
+                for (Change change : changes) {
+                    buffer.putLong(change.id());
+                    Joke joke = change.joke();
+                    buffer.put((byte) (joke == null ? 0 : 1));
+                    if (joke != null) {
+                        buffer.putLong(joke.getVersion()).putLong(joke.getDate().toEpochDay());
+                        putString(buffer, joke.getJoke());
+                        putString(buffer, joke.getDescription());
+                    }
+                }
+                return buffer.flip();
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * @return the next unused id recorded with the changes
+     */
+    private static long decode(ByteBuffer payload, Consumer<Change> apply) {
+        long nextId = payload.getLong();
+        int count = payload.getInt();
+        for (int i = 0; i < count; i++) {
+            long id = payload.getLong();
+            Joke joke = null;
+            if (payload.get() == 1) {
+                long version = payload.getLong();
+                LocalDate date = LocalDate.ofEpochDay(payload.getLong());
+                joke = new Joke(getString(payload), date);
+                joke.setId(id);
+                joke.setVersion(version);
+                joke.setDescription(getString(payload));
+            }
+            apply.accept(new Change(id, joke));
+        }
+        return nextId;
+    }
+
+    private static String getString(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path journalFile(long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+
+    private Path snapshotFile(long generation) {
+        return directory.resolve("snapshot-" + generation + ".dat");
+    }
+}
@@ -1,13 +1,30 @@
 package jtomsett.fa_jotd.repository;
 
 import jtomsett.fa_jotd.dao.Joke;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.NoRepositoryBean;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface JokeRepository extends CrudRepository<Joke, Long> {
+/**
+ * Storage for jokes, implemented by {@link JpaJokeRepository} and, with {@code jotd.storage=memory},
+ * by {@link InMemoryJokeRepository}. Storage-specific annotations belong on the implementations.
+ */
+@NoRepositoryBean
+public interface JokeRepository extends CrudRepository<Joke, Long>, JokeRepositoryCustom {
 
     Optional<Joke> findByDate(LocalDate date);
-    boolean existsJokeByDate(LocalDate date);
+
+    int deleteByDateRange(LocalDate from, LocalDate to);
+
+    <S extends Joke> S saveAndFlush(S joke);
+    void flush();
+
+    List<Joke> findByDateBetweenOrderByDateAsc(LocalDate from, LocalDate to, Limit limit);
+
+    List<LocalDate> findExistingDates(Collection<LocalDate> dates);
 }
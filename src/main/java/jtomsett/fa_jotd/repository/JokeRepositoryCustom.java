@@ -0,0 +1,24 @@
+package jtomsett.fa_jotd.repository;
+
+import jtomsett.fa_jotd.dao.Joke;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface JokeRepositoryCustom {
+
+    /**
+     * Passes every joke in the optional, inclusive date range to the action in date order,
+     * reading through a forward-only cursor. Must be called inside a transaction.
+     */
+    void forEachJoke(LocalDate from, LocalDate to, Consumer<Joke> action);
+
+    /**
+     * Deletes the jokes with the given ids in one statement.
+     *
+     * @return the id and date each deleted joke had; ids without a joke are left out
+     */
+    List<JokeDate> deleteByIds(Collection<Long> ids);
+}
@@ -0,0 +1,34 @@
+package jtomsett.fa_jotd.repository;
+
+import jtomsett.fa_jotd.dao.Joke;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface JpaJokeRepository extends JokeRepository {
+
+    // Declared queries get no transaction from Spring Data; read-only lets them run on the replica.
+    @Override
+    @Transactional(readOnly = true)
+    Optional<Joke> findByDate(LocalDate date);
+
+    @Override
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Joke j where j.date between :from and :to")
+    int deleteByDateRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Override
+    @Transactional(readOnly = true)
+    List<Joke> findByDateBetweenOrderByDateAsc(LocalDate from, LocalDate to, Limit limit);
+
+    @Override
+    @Query("select j.date from Joke j where j.date in :dates")
+    List<LocalDate> findExistingDates(@Param("dates") Collection<LocalDate> dates);
+}
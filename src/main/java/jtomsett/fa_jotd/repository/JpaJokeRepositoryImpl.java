@@ -0,0 +1,108 @@
+package jtomsett.fa_jotd.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jtomsett.fa_jotd.dao.Joke;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.SelectionQuery;
+
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+class JpaJokeRepositoryImpl implements JokeRepositoryCustom {
+
+    private static final int FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void forEachJoke(LocalDate from, LocalDate to, Consumer<Joke> action) {
+        Session session = entityManager.unwrap(Session.class);
+        SelectionQuery<Joke> query = session.createSelectionQuery(
+                        "from Joke j where (:from is null or j.date >= :from) and (:to is null or j.date <= :to) order by j.date",
+                        Joke.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setFetchSize(FETCH_SIZE)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE);
+
+        boolean lazy = setH2LazyExecution(session, true);
+        try (ScrollableResults<Joke> results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            int count = 0;
+            while (results.next()) {
+                action.accept(results.get());
+                // Keep the persistence context from growing with the archive.
+                if (++count % FETCH_SIZE == 0) {
+                    session.clear();
+                }
+            }
+        } finally {
+            if (lazy) {
+                setH2LazyExecution(session, false);
+            }
+        }
+    }
+
+    @Override
+    public List<JokeDate> deleteByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Session session = entityManager.unwrap(Session.class);
+        // Flushed before and cleared after, like the @Modifying deletes.
+        session.flush();
+        List<Object[]> rows = isH2(session) ? deleteReturning(session, ids) : lockThenDelete(session, ids);
+        session.clear();
+        return rows.stream().map(row -> new JokeDate((Long) row[0], (LocalDate) row[1])).toList();
+    }
+
+    // H2's data change delta table hands back the rows the DELETE removed, so their dates cost no extra statement.
+    private static List<Object[]> deleteReturning(Session session, Collection<Long> ids) {
+        return session.createNativeQuery("select id, date from old table (delete from joke where id in (:ids))", Object[].class)
+                .setParameterList("ids", ids)
+                .addScalar("id", Long.class)
+                .addScalar("date", LocalDate.class)
+                .addSynchronizedEntityClass(Joke.class)
+                .getResultList();
+    }
+
+    // Locked, so the rows read are the rows the delete removes.
+    private static List<Object[]> lockThenDelete(Session session, Collection<Long> ids) {
+        List<Object[]> rows = session.createSelectionQuery("select j.id, j.date from Joke j where j.id in :ids", Object[].class)
+                .setParameterList("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        if (!rows.isEmpty()) {
+            session.createMutationQuery("delete from Joke j where j.id in :ids")
+                    .setParameterList("ids", rows.stream().map(row -> row[0]).toList())
+                    .executeUpdate();
+        }
+        return rows;
+    }
+
+    // H2 otherwise builds the whole result before returning the first row, whatever the fetch size.
+    private static boolean setH2LazyExecution(Session session, boolean lazy) {
+        if (!isH2(session)) {
+            return false;
+        }
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? "TRUE" : "FALSE"));
+            }
+        });
+        return true;
+    }
+
+    private static boolean isH2(Session session) {
+        return session.doReturningWork(connection -> "H2".equals(connection.getMetaData().getDatabaseProductName()));
+    }
+}
@@ -0,0 +1,55 @@
+package jtomsett.fa_jotd.repository;
+
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the replica and everything else to the primary. For
+ * {@code readYourWrites} after a joke changes on this node, reads stay on the primary too, so a client
+ * that has just written does not read an older copy from a lagging replica.
+ * <p>
+ * The read-only flag is only known once the transaction has started, so this must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route { PRIMARY, REPLICA }
+
+    private final Clock clock;
+    private final long readYourWritesMillis;
+    private volatile long lastWriteMillis = Long.MIN_VALUE;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Clock clock, Duration readYourWrites) {
+        this.clock = clock;
+        this.readYourWritesMillis = readYourWrites.toMillis();
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Route determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Route.PRIMARY;
+        }
+        long sinceWrite = clock.millis() - lastWriteMillis;
+        return sinceWrite >= 0 && sinceWrite < readYourWritesMillis ? Route.PRIMARY : Route.REPLICA;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokeChanged(JokeChangedEvent event) {
+        lastWriteMillis = clock.millis();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokesDeleted(JokesDeletedEvent event) {
+        lastWriteMillis = clock.millis();
+    }
+}
@@ -0,0 +1,103 @@
+package jtomsett.fa_jotd.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, by {@link Type}, between
+ * {@link #start()} and {@link #stop(Statements)}. Hibernate calls {@link #inspect(String)} once per
+ * prepared statement, so the total matches its {@code prepareStatementCount} statistic without turning
+ * on global statistics. Scopes nest: a statement counts towards every scope open on the thread.
+ */
+@Component
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Statements> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        Statements statements = CURRENT.get();
+        if (statements != null) {
+            Type type = Type.of(sql);
+            for (Statements scope = statements; scope != null; scope = scope.parent) {
+                scope.counts[type.ordinal()]++;
+            }
+        }
+        return sql;
+    }
+
+    public Statements start() {
+        Statements statements = new Statements(CURRENT.get());
+        CURRENT.set(statements);
+        return statements;
+    }
+
+    public Statements stop(Statements statements) {
+        if (statements.parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(statements.parent);
+        }
+        return statements;
+    }
+
+    public enum Type {
+        SELECT, INSERT, UPDATE, DELETE,
+        /** {@code next value for} a sequence; fetched once per allocation block, not once per insert. */
+        SEQUENCE,
+        OTHER;
+
+        static Type of(String sql) {
+            String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+            if (statement.contains("next value for")) {
+                return SEQUENCE;
+            }
+            if (statement.startsWith("select") || statement.startsWith("with")) {
+                return SELECT;
+            }
+            if (statement.startsWith("insert")) {
+                return INSERT;
+            }
+            if (statement.startsWith("update")) {
+                return UPDATE;
+            }
+            if (statement.startsWith("delete")) {
+                return DELETE;
+            }
+            return OTHER;
+        }
+    }
+
+    public static final class Statements {
+
+        private final Statements parent;
+        private final int[] counts = new int[Type.values().length];
+
+        private Statements(Statements parent) {
+            this.parent = parent;
+        }
+
+        public int count(Type type) {
+            return counts[type.ordinal()];
+        }
+
+        public int total() {
+            int total = 0;
+            for (int count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("Statements{");
+            for (Type type : Type.values()) {
+                builder.append(type).append('=').append(counts[type.ordinal()]).append(type.ordinal() < counts.length - 1 ? ", " : "}");
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package jtomsett.fa_jotd.service;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Guards the state of an in-memory index that is loaded from every joke and then kept current by the change
+ * events. A refresh loads into new state while changes still apply to the old one, and replays the changes made
+ * meanwhile onto what it loaded before swapping it in, so none are lost whichever side of the cursor they land.
+ *
+ * @param <S> the index state, which need not be thread-safe
+ */
+final class EventFollowingIndex<S> {
+
+    private final JokeRepository jokeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Supplier<S> empty;
+    private final BiConsumer<S, Joke> load;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object refreshLock = new Object();
+    private S state;
+    // Changes made while a refresh is loading, replayed onto what it loaded.
+    private List<Consumer<S>> pending;
+
+    /**
+     * @param empty creates empty state
+     * @param load  adds one joke read by a refresh to the state being loaded
+     */
+    EventFollowingIndex(JokeRepository jokeRepository, PlatformTransactionManager transactionManager,
+                        Supplier<S> empty, BiConsumer<S, Joke> load) {
+        this.jokeRepository = jokeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.empty = empty;
+        this.load = load;
+        this.state = empty.get();
+    }
+
+    <R> R read(Function<S, R> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(state);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void refresh() {
+        synchronized (refreshLock) {
+            swap(new ArrayList<>(), null);
+            S loaded = empty.get();
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jokeRepository.forEachJoke(null, null, joke -> load.accept(loaded, joke)));
+            } catch (RuntimeException e) {
+                swap(null, null);
+                throw e;
+            }
+            swap(null, loaded);
+        }
+    }
+
+    /**
+     * Applies {@code change} to the current state, and to the state a refresh is loading once it is done.
+     */
+    void update(Consumer<S> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(state);
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void swap(List<Consumer<S>> nextPending, S loaded) {
+        lock.writeLock().lock();
+        try {
+            if (loaded != null) {
+                pending.forEach(change -> change.accept(loaded));
+                state = loaded;
+            }
+            pending = nextPending;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
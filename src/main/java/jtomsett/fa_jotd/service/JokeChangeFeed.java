@@ -0,0 +1,186 @@
+package jtomsett.fa_jotd.service;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dao.JokeChange;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
+import jtomsett.fa_jotd.repository.JokeChangeRepository;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Keeps the caches and in-memory indexes of several nodes on one database in step. Every change
+ * event is written to the {@code joke_change} table in the transaction that made the change, and
+ * each node polls the table for rows written by other nodes, replaying them as local events.
+ * <p>
+ * Each poll reads the rows after the highest id read so far, until it has caught up. Identity ids are
+ * handed out at insert, so a transaction can commit a lower id after a higher one was already read: ids
+ * skipped on the way are looked up again on every poll until {@code settle} after they were skipped.
+ */
+@Slf4j
+public class JokeChangeFeed {
+
+    private final JokeChangeRepository jokeChangeRepository;
+    private final JokeRepository jokeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock clock;
+    private final Duration settle;
+    private final int batchSize;
+
+    private final String node = UUID.randomUUID().toString();
+    // Set while this node replays another node's change, so it is not written back to the feed.
+    private final ThreadLocal<Boolean> replaying = ThreadLocal.withInitial(() -> false);
+
+    private final Object pollLock = new Object();
+    // Highest id read so far, or -1 before start.
+    private long highest = -1;
+    // Ids below the highest that had no row when it was read, with the System.nanoTime() they were skipped.
+    private final TreeMap<Long, Long> gaps = new TreeMap<>();
+
+    public JokeChangeFeed(JokeChangeRepository jokeChangeRepository, JokeRepository jokeRepository,
+                          PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                          Clock clock, Duration settle, int batchSize) {
+        this.jokeChangeRepository = jokeChangeRepository;
+        this.jokeRepository = jokeRepository;
+        // Not read-only, so a replica does not answer with a joke older than the change being replayed.
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        this.settle = settle;
+        this.batchSize = batchSize;
+    }
+
+    // Before the caches and indexes load, so changes made during their loads are replayed afterwards.
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        synchronized (pollLock) {
+            highest = jokeChangeRepository.findMaxId();
+            gaps.clear();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onJokeChanged(JokeChangedEvent event) {
+        if (replaying.get()) {
+            return;
+        }
+        JokeChange change = change(event.isDeleted() ? JokeChange.Kind.DELETED : JokeChange.Kind.CHANGED);
+        change.setJokeId(event.id());
+        change.setPreviousDate(event.previousDate());
+        jokeChangeRepository.save(change);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onJokesDeleted(JokesDeletedEvent event) {
+        if (replaying.get()) {
+            return;
+        }
+        JokeChange change = change(JokeChange.Kind.RANGE_DELETED);
+        change.setFromDate(event.from());
+        change.setToDate(event.to());
+        jokeChangeRepository.save(change);
+    }
+
+    /**
+     * Replays rows written by other nodes since the last poll.
+     *
+     * @return how many rows were replayed
+     */
+    public int poll() {
+        synchronized (pollLock) {
+            if (highest < 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            int replayed = 0;
+
+            // Gaps are looked up one last time before they settle, then given up on.
+            List<Long> unsettled = List.copyOf(gaps.keySet());
+            for (int from = 0; from < unsettled.size(); from += batchSize) {
+                List<Long> ids = unsettled.subList(from, Math.min(unsettled.size(), from + batchSize));
+                for (JokeChange change : jokeChangeRepository.findByIdInOrderByIdAsc(ids)) {
+                    gaps.remove(change.getId());
+                    replayed += replay(change);
+                }
+            }
+            gaps.values().removeIf(skipped -> now - skipped >= settle.toNanos());
+
+            List<JokeChange> changes;
+            do {
+                changes = jokeChangeRepository.findByIdGreaterThanOrderByIdAsc(highest, Limit.of(batchSize));
+                for (JokeChange change : changes) {
+                    for (long gap = highest + 1; gap < change.getId(); gap++) {
+                        gaps.put(gap, now);
+                    }
+                    highest = change.getId();
+                    replayed += replay(change);
+                }
+            } while (changes.size() == batchSize);
+            return replayed;
+        }
+    }
+
+    public void purge(Duration retention) {
+        int deleted = jokeChangeRepository.deleteCreatedBefore(clock.instant().minus(retention));
+        if (deleted > 0) {
+            log.debug("Purged {} change feed rows older than {}", deleted, retention);
+        }
+    }
+
+    String node() {
+        return node;
+    }
+
+    /**
+     * @return 1 if the change was replayed, 0 if this node wrote it
+     */
+    private int replay(JokeChange change) {
+        if (node.equals(change.getNode())) {
+            return 0;
+        }
+        Object event = switch (change.getKind()) {
+            case RANGE_DELETED -> new JokesDeletedEvent(change.getFromDate(), change.getToDate());
+            case DELETED -> JokeChangedEvent.deleted(change.getJokeId(), change.getPreviousDate());
+            // Replays the joke as it is now, which also covers later changes still to be replayed.
+            case CHANGED -> {
+                Optional<Joke> joke = transactionTemplate.execute(status -> jokeRepository.findById(change.getJokeId()));
+                yield joke.isPresent() ? JokeChangedEvent.updated(change.getPreviousDate(), joke.get())
+                        : JokeChangedEvent.deleted(change.getJokeId());
+            }
+        };
+        replaying.set(true);
+        try {
+            eventPublisher.publishEvent(event);
+        } finally {
+            replaying.set(false);
+        }
+        return 1;
+    }
+
+    private JokeChange change(JokeChange.Kind kind) {
+        JokeChange change = new JokeChange();
+        change.setNode(node);
+        change.setKind(kind);
+        change.setCreatedAt(clock.instant());
+        return change;
+    }
+}
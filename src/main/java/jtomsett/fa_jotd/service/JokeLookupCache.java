@@ -0,0 +1,149 @@
+package jtomsett.fa_jotd.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jtomsett.fa_jotd.config.LookupCacheProperties;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bounded id and date lookup cache in front of the repository. Misses are cached as empty
+ * lookups so browsing dates without a joke does not keep reaching the database. Writes are
+ * applied to both keys as they happen. Concurrent misses for the same key share one query, also
+ * with the cache disabled.
+ */
+@Component
+public class JokeLookupCache {
+
+    private final AsyncCache<Long, Optional<Joke>> byId;
+    private final AsyncCache<LocalDate, Optional<Joke>> byDate;
+    private final SingleFlight<Long, Optional<Joke>> byIdLoads;
+    private final SingleFlight<LocalDate, Optional<Joke>> byDateLoads;
+
+    public JokeLookupCache(LookupCacheProperties properties) {
+        // Caffeine still serves hits at maximumSize(0) until its maintenance catches up, so zero bypasses the cache.
+        boolean enabled = properties.maxSize() > 0;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(properties.maxSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .buildAsync();
+        this.byDate = Caffeine.newBuilder()
+                .maximumSize(properties.maxSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .buildAsync();
+        this.byIdLoads = enabled ? new SingleFlight<>(byId, properties.maxWait()) : new SingleFlight<>(properties.maxWait());
+        this.byDateLoads = enabled ? new SingleFlight<>(byDate, properties.maxWait()) : new SingleFlight<>(properties.maxWait());
+    }
+
+    public Optional<Joke> getById(Long id, Function<Long, Optional<Joke>> loader) {
+        return byIdLoads.get(id, loader);
+    }
+
+    /**
+     * @param loader given the ids missing from the cache, returns a lookup for each of them
+     * @return a lookup for each id, in the order given
+     */
+    public Map<Long, Optional<Joke>> getAllById(Collection<Long> ids, Function<Set<Long>, Map<Long, Optional<Joke>>> loader) {
+        return byIdLoads.getAll(ids, loader);
+    }
+
+    public Optional<Joke> getByDate(LocalDate date, Function<LocalDate, Optional<Joke>> loader) {
+        return byDateLoads.get(date, loader);
+    }
+
+    public CompletableFuture<Optional<Joke>> getByIdAsync(Long id, Function<Long, CompletableFuture<Optional<Joke>>> loader) {
+        return byIdLoads.getAsync(id, loader);
+    }
+
+    /**
+     * @param loader given the ids missing from the cache, completes with a lookup for each of them
+     * @return a lookup for each id, in the order given
+     */
+    public CompletableFuture<Map<Long, Optional<Joke>>> getAllByIdAsync(
+            Collection<Long> ids, Function<Set<Long>, CompletableFuture<Map<Long, Optional<Joke>>>> loader) {
+        return byIdLoads.getAllAsync(ids, loader);
+    }
+
+    public CompletableFuture<Optional<Joke>> getByDateAsync(LocalDate date, Function<LocalDate, CompletableFuture<Optional<Joke>>> loader) {
+        return byDateLoads.getAsync(date, loader);
+    }
+
+    public Map<String, Cache<?, ?>> caches() {
+        return Map.of("jokes.lookup.id", byId.synchronous(), "jokes.lookup.date", byDate.synchronous());
+    }
+
+    public Map<String, SingleFlight<?, ?>> loads() {
+        return Map.of("jokes.lookup.id", byIdLoads, "jokes.lookup.date", byDateLoads);
+    }
+
+    public void invalidateAll() {
+        byId.synchronous().invalidateAll();
+        byDate.synchronous().invalidateAll();
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokeChanged(JokeChangedEvent event) {
+        if (event.isDeleted()) {
+            Optional<Joke> cached = byId.synchronous().getIfPresent(event.id());
+            byId.synchronous().put(event.id(), Optional.empty());
+            if (event.previousDate() != null) {
+                byDate.synchronous().put(event.previousDate(), Optional.empty());
+            } else if (cached != null && cached.isPresent()) {
+                byDate.synchronous().put(cached.get().getDate(), Optional.empty());
+            } else {
+                // Date unknown: only clear the entries that hold this id, leaving the rest (and their TTLs) alone.
+                clearDates(joke -> Objects.equals(joke.getId(), event.id()));
+            }
+            return;
+        }
+
+        Joke joke = event.joke();
+        if (event.previousDate() != null && !event.previousDate().equals(joke.getDate())) {
+            byDate.synchronous().put(event.previousDate(), Optional.empty());
+        }
+        byId.synchronous().put(event.id(), Optional.of(joke));
+        byDate.synchronous().put(joke.getDate(), Optional.of(joke));
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokesDeleted(JokesDeletedEvent event) {
+        byDate.synchronous().asMap().forEach((date, joke) -> {
+            if (joke.isPresent() && event.covers(date)) {
+                byDate.synchronous().asMap().replace(date, joke, Optional.empty());
+            }
+        });
+        byId.synchronous().asMap().forEach((id, joke) -> {
+            if (joke.isPresent() && event.covers(joke.get().getDate())) {
+                byId.synchronous().asMap().replace(id, joke, Optional.empty());
+            }
+        });
+    }
+
+    private void clearDates(Predicate<Joke> predicate) {
+        byDate.synchronous().asMap().forEach((date, joke) -> {
+            if (joke.isPresent() && predicate.test(joke.get())) {
+                byDate.synchronous().asMap().replace(date, joke, Optional.empty());
+            }
+        });
+    }
+}
@@ -0,0 +1,504 @@
+package jtomsett.fa_jotd.service;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import jtomsett.fa_jotd.util.LongObjectMap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over the text and description of every joke, for ranked search without scanning the joke table.
+ * Every word of a query must match a word of the joke, either exactly or as a prefix; matches are ranked by BM25.
+ * Loaded when the application is ready and kept current by the change events.
+ */
+@Component
+public class JokeSearchIndex {
+
+    // Words a query prefix may expand to, taken in alphabetical order.
+    static final int MAX_EXPANSIONS = 64;
+    // No joke: an empty slot, or a joke that did not match.
+    private static final int NONE = -1;
+
+    private final EventFollowingIndex<Terms> index;
+
+    public JokeSearchIndex(JokeRepository jokeRepository, PlatformTransactionManager transactionManager) {
+        this.index = new EventFollowingIndex<>(jokeRepository, transactionManager, Terms::new,
+                (terms, joke) -> terms.add(joke.getId(), joke.getDate().toEpochDay(), text(joke)));
+    }
+
+    /**
+     * @return ids of the best matching jokes, best first, at most {@code limit} of them
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (words.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        return index.read(terms -> terms.search(words, limit));
+    }
+
+    public int size() {
+        return index.read(terms -> terms.live);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refresh() {
+        index.refresh();
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokeChanged(JokeChangedEvent event) {
+        if (event.isDeleted()) {
+            index.update(terms -> terms.remove(event.id()));
+        } else {
+            long day = event.joke().getDate().toEpochDay();
+            List<String> words = text(event.joke());
+            index.update(terms -> terms.add(event.id(), day, words));
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokesDeleted(JokesDeletedEvent event) {
+        long fromDay = event.from().toEpochDay();
+        long toDay = event.to().toEpochDay();
+        index.update(terms -> terms.removeRange(fromDay, toDay));
+    }
+
+    /**
+     * Lower-cased words of letters and digits, with accents and in-word apostrophes dropped, so that
+     * "Café" matches "cafe" and "don't" matches "dont".
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                text = Normalizer.normalize(text, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        char[] word = new char[text.length()];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                word[length++] = c;
+            } else if (c >= 'A' && c <= 'Z') {
+                word[length++] = (char) (c + ('a' - 'A'));
+            } else if (c >= 0x80 && Character.isLetterOrDigit(c)) {
+                // Surrogate pairs are not letters here, so scripts outside the BMP are not indexed.
+                word[length++] = Character.toLowerCase(c);
+            } else if (c >= 0x80 && Character.getType(c) == Character.NON_SPACING_MARK
+                    || (c == '\'' || c == '’') && length > 0) {
+                continue;
+            } else if (length > 0) {
+                words.add(new String(word, 0, length));
+                length = 0;
+            }
+        }
+        if (length > 0) {
+            words.add(new String(word, 0, length));
+        }
+        return words;
+    }
+
+    private static List<String> text(Joke joke) {
+        List<String> words = tokenize(joke.getJoke());
+        words.addAll(tokenize(joke.getDescription()));
+        return words;
+    }
+
+    /**
+     * Postings per word in a sorted dictionary, so a prefix is a range of it. Jokes are numbered densely;
+     * removing one only marks it removed, and the postings still naming removed jokes are dropped in one sweep
+     * once they outnumber the live ones, so a change costs amortized time in the size of the joke. Not thread-safe.
+     */
+    static final class Terms {
+
+        private static final float K1 = 1.2f;
+        private static final float B = 0.75f;
+        // Share of a word's score a joke gets when it only matched the query word as a prefix.
+        private static final float PREFIX_WEIGHT = 0.5f;
+        private static final int MIN_SWEEP = 1024;
+
+        private final Map<String, Postings> postingsByWord = new HashMap<>();
+        // The same postings in word order, for prefixes.
+        private final TreeMap<String, Postings> dictionary = new TreeMap<>();
+        private final LongObjectMap<Integer> docsById = new LongObjectMap<>(16);
+        private long[] docIds = new long[16];
+        private int[] docDays = new int[16];
+        private int[] docLengths = new int[16];
+        private int[] docWords = new int[16];
+        private boolean[] removed = new boolean[16];
+        private int docs;
+        private int[] free = new int[16];
+        private int freeCount;
+        private int live;
+        private long liveLength;
+        private long livePostings;
+        private long stalePostings;
+
+        /**
+         * Indexes the joke {@code id} under its words, replacing what was indexed for it before.
+         */
+        void add(long id, long day, List<String> words) {
+            remove(id);
+            int doc = allocate();
+            int distinct = 0;
+            for (String word : words) {
+                Postings postings = postingsByWord.get(word);
+                if (postings == null) {
+                    postings = new Postings(word);
+                    postingsByWord.put(word, postings);
+                    dictionary.put(word, postings);
+                }
+                if (postings.add(doc)) {
+                    distinct++;
+                }
+            }
+
+            docIds[doc] = id;
+            docDays[doc] = (int) day;
+            docLengths[doc] = words.size();
+            docWords[doc] = distinct;
+            removed[doc] = false;
+            docsById.put(id, doc);
+            live++;
+            liveLength += words.size();
+            livePostings += distinct;
+        }
+
+        void remove(long id) {
+            Integer doc = docsById.remove(id);
+            if (doc == null) {
+                return;
+            }
+            removed[doc] = true;
+            live--;
+            liveLength -= docLengths[doc];
+            livePostings -= docWords[doc];
+            stalePostings += docWords[doc];
+            if (docWords[doc] == 0) {
+                release(doc);
+            }
+            if (stalePostings > Math.max(livePostings, MIN_SWEEP)) {
+                sweep();
+            }
+        }
+
+        // A full pass over the jokes; range deletes are rare next to single changes.
+        void removeRange(long fromDay, long toDay) {
+            for (int doc = 0; doc < docs; doc++) {
+                if (!removed[doc] && docDays[doc] >= fromDay && docDays[doc] <= toDay) {
+                    remove(docIds[doc]);
+                }
+            }
+        }
+
+        List<Long> search(List<String> words, int limit) {
+            List<Expansion> expansions = new ArrayList<>();
+            for (String word : words) {
+                Expansion expansion = expand(word);
+                if (expansion.postings().isEmpty()) {
+                    return List.of();
+                }
+                expansions.add(expansion);
+            }
+            // Start from the word with the fewest postings so the candidate set is as small as it gets.
+            expansions.sort(Comparator.comparingLong(Expansion::size));
+
+            Scores scores = new Scores(expansions.getFirst().size(), docs);
+            float averageLength = (float) liveLength / Math.max(live, 1);
+            for (int round = 0; round < expansions.size(); round++) {
+                Expansion expansion = expansions.get(round);
+                for (Postings postings : expansion.postings()) {
+                    float weight = postings.word.equals(expansion.word()) ? idf(postings) : PREFIX_WEIGHT * idf(postings);
+                    for (int i = 0; i < postings.size; i++) {
+                        int doc = postings.docs[i];
+                        if (!removed[doc]) {
+                            scores.match(doc, round, weight * tf(postings.frequencies[i] & 0xFF, docLengths[doc] / averageLength));
+                        }
+                    }
+                }
+            }
+            return top(scores, expansions.size(), limit);
+        }
+
+        private Expansion expand(String word) {
+            List<Postings> postings = new ArrayList<>();
+            for (Map.Entry<String, Postings> entry : dictionary.tailMap(word, true).entrySet()) {
+                if (!entry.getKey().startsWith(word) || postings.size() == MAX_EXPANSIONS) {
+                    break;
+                }
+                postings.add(entry.getValue());
+            }
+            return new Expansion(word, postings);
+        }
+
+        // Keeps the best candidates in a heap with the worst of them on top.
+        private List<Long> top(Scores scores, int words, int limit) {
+            int[] heap = new int[Math.min(limit, scores.capacity())];
+            int size = 0;
+            for (int slot = 0; slot < scores.capacity(); slot++) {
+                if (scores.doc(slot, words) == NONE) {
+                    continue;
+                }
+                if (size < heap.length) {
+                    heap[size] = slot;
+                    for (int i = size++; i > 0 && better(scores, words, heap[(i - 1) / 2], heap[i]); i = (i - 1) / 2) {
+                        swap(heap, i, (i - 1) / 2);
+                    }
+                } else if (better(scores, words, slot, heap[0])) {
+                    heap[0] = slot;
+                    siftDown(heap, size, scores, words);
+                }
+            }
+            Long[] ids = new Long[size];
+            while (size > 0) {
+                ids[size - 1] = docIds[scores.doc(heap[0], words)];
+                heap[0] = heap[--size];
+                siftDown(heap, size, scores, words);
+            }
+            return Arrays.asList(ids);
+        }
+
+        private void siftDown(int[] heap, int size, Scores scores, int words) {
+            for (int i = 0; 2 * i + 1 < size; ) {
+                int worse = 2 * i + 1;
+                if (worse + 1 < size && better(scores, words, heap[worse], heap[worse + 1])) {
+                    worse++;
+                }
+                if (!better(scores, words, heap[i], heap[worse])) {
+                    return;
+                }
+                swap(heap, i, worse);
+                i = worse;
+            }
+        }
+
+        // Higher score first, then lower id so ties come out in a stable order.
+        private boolean better(Scores scores, int words, int slot, int other) {
+            float difference = scores.total(slot) - scores.total(other);
+            return difference > 0 || difference == 0 && docIds[scores.doc(slot, words)] < docIds[scores.doc(other, words)];
+        }
+
+        private static void swap(int[] heap, int i, int j) {
+            int slot = heap[i];
+            heap[i] = heap[j];
+            heap[j] = slot;
+        }
+
+        private float idf(Postings postings) {
+            // Postings still naming removed jokes count until the next sweep; close enough for ranking.
+            int containing = Math.min(postings.size, live);
+            return (float) Math.log(1 + (live - containing + 0.5) / (containing + 0.5));
+        }
+
+        private static float tf(int frequency, float relativeLength) {
+            return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * relativeLength));
+        }
+
+        private int allocate() {
+            if (freeCount > 0) {
+                return free[--freeCount];
+            }
+            if (docs == docIds.length) {
+                int grown = docs * 2;
+                docIds = Arrays.copyOf(docIds, grown);
+                docDays = Arrays.copyOf(docDays, grown);
+                docLengths = Arrays.copyOf(docLengths, grown);
+                docWords = Arrays.copyOf(docWords, grown);
+                removed = Arrays.copyOf(removed, grown);
+            }
+            return docs++;
+        }
+
+        // Drops every posting of a removed joke, then frees their numbers for reuse.
+        private void sweep() {
+            postingsByWord.values().removeIf(postings -> postings.retainLive(removed) == 0 && dictionary.remove(postings.word) != null);
+            for (int doc = 0; doc < docs; doc++) {
+                if (removed[doc] && docWords[doc] > 0) {
+                    docWords[doc] = 0;
+                    release(doc);
+                }
+            }
+            stalePostings = 0;
+        }
+
+        private void release(int doc) {
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = doc;
+        }
+
+    }
+
+    /**
+     * A query word and the postings of the indexed words it is a prefix of, itself included.
+     */
+    private record Expansion(String word, List<Postings> postings) {
+
+        long size() {
+            long total = 0;
+            for (Postings each : postings) {
+                total += each.size;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The jokes containing one word, with the times it occurs in each, capped at 255.
+     */
+    static final class Postings {
+
+        private final String word;
+        private int[] docs = new int[2];
+        private byte[] frequencies = new byte[2];
+        private int size;
+
+        Postings(String word) {
+            this.word = word;
+        }
+
+        /**
+         * Counts one more occurrence in the joke, which is the last one added or a new one.
+         *
+         * @return whether the joke is new to this word
+         */
+        boolean add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) {
+                if (frequencies[size - 1] != (byte) 255) {
+                    frequencies[size - 1]++;
+                }
+                return false;
+            }
+            if (size == docs.length) {
+                int grown = size + (size >> 1) + 1;
+                docs = Arrays.copyOf(docs, grown);
+                frequencies = Arrays.copyOf(frequencies, grown);
+            }
+            docs[size] = doc;
+            frequencies[size] = 1;
+            size++;
+            return true;
+        }
+
+        int retainLive(boolean[] removed) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed[docs[i]]) {
+                    docs[kept] = docs[i];
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            if (size < docs.length / 4) {
+                docs = Arrays.copyOf(docs, Math.max(2, size));
+                frequencies = Arrays.copyOf(frequencies, Math.max(2, size));
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Running score per candidate joke. A joke stays a candidate only while it matched every word so far:
+     * {@code rounds} holds how many words it matched, {@code previous} the score of all but the last of them
+     * and {@code current} its best score for the last one across that word's prefix expansions. Candidates
+     * are hashed, or kept in arrays indexed by joke once they are a large share of all jokes.
+     */
+    static final class Scores {
+
+        private static final int DENSE_SHARE = 8;
+
+        private final int[] docs;
+        private final int[] rounds;
+        private final float[] previous;
+        private final float[] current;
+
+        Scores(long candidates, int docCount) {
+            boolean dense = candidates * DENSE_SHARE >= docCount;
+            int capacity = dense ? docCount : Integer.highestOneBit((int) Math.max(2, candidates * 2) - 1) << 1;
+            docs = dense ? null : new int[capacity];
+            rounds = new int[capacity];
+            previous = new float[capacity];
+            current = new float[capacity];
+            if (docs != null) {
+                Arrays.fill(docs, NONE);
+            }
+        }
+
+        void match(int doc, int round, float score) {
+            // Only the first word adds candidates.
+            int slot = docs == null ? doc : slot(doc, round == 0);
+            if (slot == NONE) {
+                return;
+            }
+            if (rounds[slot] == round + 1) {
+                current[slot] = Math.max(current[slot], score);
+            } else if (rounds[slot] == round) {
+                previous[slot] += current[slot];
+                current[slot] = score;
+                rounds[slot] = round + 1;
+            }
+        }
+
+        int capacity() {
+            return rounds.length;
+        }
+
+        /**
+         * @return the joke in the slot if it matched all {@code words}, otherwise {@link #NONE}
+         */
+        int doc(int slot, int words) {
+            if (rounds[slot] != words) {
+                return NONE;
+            }
+            return docs == null ? slot : docs[slot];
+        }
+
+        float total(int slot) {
+            return previous[slot] + current[slot];
+        }
+
+        private int slot(int doc, boolean insert) {
+            int mask = docs.length - 1;
+            int hash = doc * 0x9E3779B9;
+            for (int i = (hash ^ hash >>> 16) & mask; ; i = (i + 1) & mask) {
+                if (docs[i] == doc) {
+                    return i;
+                }
+                if (docs[i] == NONE) {
+                    if (insert) {
+                        docs[i] = doc;
+                        return i;
+                    }
+                    return NONE;
+                }
+            }
+        }
+    }
+}
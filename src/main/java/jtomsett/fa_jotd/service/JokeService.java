@@ -1,19 +1,35 @@
 package jtomsett.fa_jotd.service;
 
 import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.BatchImportResult;
+import jtomsett.fa_jotd.dto.JokeLookupResult;
+import jtomsett.fa_jotd.dto.JokePage;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface JokeService {
 
     Joke addJoke(Joke joke);
+    List<BatchImportResult> addJokes(List<Joke> jokes);
     Joke updateJoke(Joke joke);
 
+    Optional<Joke> getJokeOfTheDay();
     Optional<Joke> getJokeById(Long id);
+    List<JokeLookupResult> getJokesById(List<Long> ids);
     Optional<Joke> getJokeByDate(LocalDate date);
+    JokePage getJokes(LocalDate from, LocalDate to, int limit, LocalDate after);
+    Optional<Joke> getRandomJoke(LocalDate from, LocalDate to);
+    List<Joke> searchJokes(String query, int limit);
 
-    void deleteJoke(Long id);
+    int deleteJoke(Long id);
+    int deleteJokes(Collection<Long> ids);
+    int deleteJokes(LocalDate from, LocalDate to);
+
+    void exportJokes(LocalDate from, LocalDate to, Consumer<Joke> sink);
 
 }
 
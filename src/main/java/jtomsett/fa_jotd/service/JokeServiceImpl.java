@@ -1,40 +1,119 @@
 package jtomsett.fa_jotd.service;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.validation.ValidationException;
 import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.BatchImportResult;
+import jtomsett.fa_jotd.dto.JokeLookupResult;
+import jtomsett.fa_jotd.dto.JokePage;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
 import jtomsett.fa_jotd.exceptions.InvalidJokeException;
+import jtomsett.fa_jotd.exceptions.InvalidRangeException;
 import jtomsett.fa_jotd.exceptions.JokeExistsForDateException;
 import jtomsett.fa_jotd.exceptions.JokeNotFoundException;
+import jtomsett.fa_jotd.exceptions.StaleJokeException;
+import jtomsett.fa_jotd.repository.JokeDate;
 import jtomsett.fa_jotd.repository.JokeRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "jotd.service", description = "JokeService calls", histogram = true)
 public class JokeServiceImpl implements JokeService {
 
-    private final JokeRepository jokeRepository;
+    public static final int MAX_PAGE_SIZE = 1000;
 
+    private final JokeRepository jokeRepository;
+    private final TodaysJokeHolder todaysJokeHolder;
+    private final JokeLookupCache jokeLookupCache;
+    private final RandomJokeIndex randomJokeIndex;
+    private final JokeSearchIndex jokeSearchIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
+    @Transactional
     public Joke addJoke(Joke joke) throws JokeExistsForDateException {
 
         if (joke == null) {
             throw new ValidationException("Cannot add a null joke.");
         }
 
-        if (joke.getDate() != null && jokeRepository.existsJokeByDate(joke.getDate())) {
+        joke.setId(null);
+        joke.setVersion(null);
+
+        Joke saved;
+        try {
+            // The unique index on date decides conflicts, so there is no separate existence check.
+            saved = jokeRepository.saveAndFlush(joke);
+        } catch (DataIntegrityViolationException e) {
             throw new JokeExistsForDateException(joke.getDate());
         }
+        eventPublisher.publishEvent(JokeChangedEvent.added(saved));
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public List<BatchImportResult> addJokes(List<Joke> jokes) {
+        if (jokes == null || jokes.stream().anyMatch(Objects::isNull)) {
+            throw new ValidationException("Cannot add a null joke.");
+        }
 
-        return jokeRepository.save(joke);
+        Set<LocalDate> dates = new HashSet<>();
+        for (Joke joke : jokes) {
+            if (joke.getDate() == null) {
+                throw new ValidationException("Cannot add a joke without a date.");
+            }
+            dates.add(joke.getDate());
+        }
+        Set<LocalDate> taken = new HashSet<>(jokeRepository.findExistingDates(dates));
+
+        List<BatchImportResult> results = new ArrayList<>(jokes.size());
+        List<Joke> inserts = new ArrayList<>(jokes.size());
+        for (int i = 0; i < jokes.size(); i++) {
+            Joke joke = jokes.get(i);
+            if (!taken.add(joke.getDate())) {
+                results.add(BatchImportResult.conflict(i, joke));
+                continue;
+            }
+            joke.setId(null);
+            joke.setVersion(null);
+            inserts.add(joke);
+            results.add(BatchImportResult.inserted(i, joke));
+        }
+
+        try {
+            jokeRepository.saveAll(inserts);
+            jokeRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw new JokeExistsForDateException("A concurrent write claimed one of the imported dates.");
+        }
+        inserts.forEach(joke -> eventPublisher.publishEvent(JokeChangedEvent.added(joke)));
+        return results;
     }
 
     @Override
-    public Joke updateJoke(Joke joke) throws InvalidJokeException, JokeNotFoundException, JokeExistsForDateException {
+    @Transactional
+    public Joke updateJoke(Joke joke) throws InvalidJokeException, JokeNotFoundException, JokeExistsForDateException, StaleJokeException {
         if (joke == null) {
             throw new InvalidJokeException("Cannot update a null joke.");
         }
@@ -43,34 +122,63 @@ public class JokeServiceImpl implements JokeService {
             throw new InvalidJokeException("Cannot update a joke without an id.");
         }
 
-        Optional<Joke> oJoke = getJokeById(joke.getId());
-        if (oJoke.isEmpty()) {
-            throw new JokeNotFoundException(joke.getId());
+        // Without the version the client read, a concurrent edit would be silently overwritten.
+        if (joke.getVersion() == null) {
+            throw new InvalidJokeException("Cannot update a joke without the version it was read at.");
         }
 
-        if(joke.getDate() != null &&
-                oJoke.get().getDate() != null &&
-                !oJoke.get().getDate().equals(joke.getDate())){
+        Joke existing = jokeRepository.findById(joke.getId()).orElseThrow(() -> new JokeNotFoundException(joke.getId()));
+        if (!joke.getVersion().equals(existing.getVersion())) {
+            throw new StaleJokeException(joke.getId());
+        }
 
-            Optional<Joke> oJokeByDate = getJokeByDate(joke.getDate());
+        LocalDate previousDate = existing.getDate();
+        existing.setJoke(joke.getJoke());
+        existing.setDate(joke.getDate());
+        existing.setDescription(joke.getDescription());
 
-            if(oJokeByDate.isPresent() &&
-                    oJokeByDate.get().getId() != null &&
-                    oJoke.get().getId() != null &&
-                    !oJokeByDate.get().getId().equals(oJoke.get().getId())){
-                throw new JokeExistsForDateException("Another Joke already exists for specified date: "+joke.getDate());
-            }
+        // existing is managed, so this is a single versioned UPDATE; the unique index on date catches clashes.
+        Joke saved;
+        try {
+            saved = jokeRepository.saveAndFlush(existing);
+        } catch (DataIntegrityViolationException e) {
+            throw new JokeExistsForDateException("Another Joke already exists for specified date: "+joke.getDate());
+        } catch (OptimisticLockingFailureException e) {
+            throw new StaleJokeException(joke.getId());
         }
 
-        return jokeRepository.save(joke);
+        eventPublisher.publishEvent(JokeChangedEvent.updated(previousDate, saved));
+        return saved;
+    }
+
+    @Override
+    public Optional<Joke> getJokeOfTheDay() {
+        return todaysJokeHolder.get();
     }
 
+    // Not @Transactional: most calls are cache hits and should not open a session. The loaders are
+    // read-only repository calls, so misses are still routed to the replica.
     @Override
     public Optional<Joke> getJokeById(Long id) {
         if(id == null) {
             return Optional.empty();
         }
-        return jokeRepository.findById(id);
+        return jokeLookupCache.getById(id, jokeRepository::findById);
+    }
+
+    // Cached ids are served from the cache; the misses are read with one IN query.
+    @Override
+    public List<JokeLookupResult> getJokesById(List<Long> ids) {
+        if (ids == null || ids.isEmpty() || ids.size() > MAX_PAGE_SIZE) {
+            throw new InvalidRangeException("Between 1 and " + MAX_PAGE_SIZE + " ids can be fetched at once.");
+        }
+
+        List<Long> present = ids.stream().filter(Objects::nonNull).toList();
+        Map<Long, Optional<Joke>> jokes = present.isEmpty() ? Map.of() : jokeLookupCache.getAllById(present, this::findAllById);
+        return ids.stream()
+                .map(id -> id == null ? JokeLookupResult.notFound(null)
+                        : jokes.get(id).map(JokeLookupResult::found).orElseGet(() -> JokeLookupResult.notFound(id)))
+                .toList();
     }
 
     @Override
@@ -78,13 +186,110 @@ public class JokeServiceImpl implements JokeService {
         if (date == null) {
             return Optional.empty();
         }
-        return jokeRepository.findByDate(date);
+        return jokeLookupCache.getByDate(date, jokeRepository::findByDate);
     }
 
     @Override
-    public void deleteJoke(Long id) {
-        if (id != null) {
-            jokeRepository.deleteById(id);
+    @Transactional(readOnly = true)
+    public JokePage getJokes(LocalDate from, LocalDate to, int limit, LocalDate after) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new InvalidRangeException("A date range needs a from date on or before its to date.");
+        }
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidRangeException("Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+
+        // Dates are unique, so the next page starts the day after the cursor.
+        LocalDate start = after != null && !after.isBefore(from) ? after.plusDays(1) : from;
+        if (start.isAfter(to)) {
+            return new JokePage(List.of(), null);
+        }
+
+        List<Joke> jokes = jokeRepository.findByDateBetweenOrderByDateAsc(start, to, Limit.of(limit + 1));
+        if (jokes.size() <= limit) {
+            return new JokePage(jokes, null);
         }
+
+        List<Joke> page = jokes.subList(0, limit);
+        return new JokePage(page, page.get(limit - 1).getDate());
+    }
+
+    // Picks from the in-memory index, then reads through the lookup cache like any other date lookup.
+    @Override
+    public Optional<Joke> getRandomJoke(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidRangeException("A date range needs a from date on or before its to date.");
+        }
+        return randomJokeIndex.pick(from, to).flatMap(this::getJokeByDate);
+    }
+
+    // Ranks in the in-memory index, then reads the hits through the lookup cache in one go.
+    @Override
+    public List<Joke> searchJokes(String query, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidRangeException("Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        List<Long> ids = jokeSearchIndex.search(query, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jokeLookupCache.getAllById(ids, this::findAllById).values().stream()
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public int deleteJoke(Long id) {
+        if (id == null) {
+            return 0;
+        }
+        return deleteJokes(List.of(id));
+    }
+
+    @Override
+    @Transactional
+    public int deleteJokes(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+
+        Set<Long> distinctIds = new HashSet<>(ids);
+        distinctIds.remove(null);
+        if (distinctIds.isEmpty()) {
+            return 0;
+        }
+
+        List<JokeDate> deleted = jokeRepository.deleteByIds(distinctIds);
+        deleted.forEach(joke -> eventPublisher.publishEvent(JokeChangedEvent.deleted(joke.id(), joke.date())));
+        return deleted.size();
+    }
+
+    @Override
+    @Transactional
+    public int deleteJokes(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new InvalidRangeException("A date range needs a from date on or before its to date.");
+        }
+
+        int deleted = jokeRepository.deleteByDateRange(from, to);
+        if (deleted > 0) {
+            eventPublisher.publishEvent(new JokesDeletedEvent(from, to));
+        }
+        return deleted;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportJokes(LocalDate from, LocalDate to, Consumer<Joke> sink) {
+        jokeRepository.forEachJoke(from, to, sink);
+    }
+
+    private Map<Long, Optional<Joke>> findAllById(Set<Long> ids) {
+        Map<Long, Optional<Joke>> found = new HashMap<>(ids.size() * 2);
+        ids.forEach(id -> found.put(id, Optional.empty()));
+        jokeRepository.findAllById(ids).forEach(joke -> found.put(joke.getId(), Optional.of(joke)));
+        return found;
     }
 }
@@ -0,0 +1,284 @@
+package jtomsett.fa_jotd.service;
+
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import jtomsett.fa_jotd.util.LongObjectMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * The id and date of every joke, so a random one can be picked without touching the joke table.
+ * Any joke is one array read away; a joke within a date range is found in O(log n) through a Fenwick
+ * tree counting jokes per day. Loaded when the application is ready and kept current by the change events.
+ */
+@Slf4j
+@Component
+public class RandomJokeIndex {
+
+    // Same bound as the in-memory storage: about 11,000 years, 16MB per per-day array.
+    static final int MAX_SPAN_DAYS = 1 << 22;
+
+    private final EventFollowingIndex<Days> index;
+
+    public RandomJokeIndex(JokeRepository jokeRepository, PlatformTransactionManager transactionManager) {
+        this.index = new EventFollowingIndex<>(jokeRepository, transactionManager, Days::new,
+                (days, joke) -> days.add(joke.getId(), joke.getDate().toEpochDay()));
+    }
+
+    /**
+     * @param from first date to consider, or {@code null} for no lower bound
+     * @param to   last date to consider, or {@code null} for no upper bound
+     * @return the date of a joke chosen uniformly from those in the range
+     */
+    public Optional<LocalDate> pick(LocalDate from, LocalDate to) {
+        return pick(from, to, ThreadLocalRandom.current());
+    }
+
+    Optional<LocalDate> pick(LocalDate from, LocalDate to, RandomGenerator random) {
+        long fromDay = from == null ? Long.MIN_VALUE : from.toEpochDay();
+        long toDay = to == null ? Long.MAX_VALUE : to.toEpochDay();
+        long day = index.read(days -> days.pick(fromDay, toDay, random));
+        return day == Long.MIN_VALUE ? Optional.empty() : Optional.of(LocalDate.ofEpochDay(day));
+    }
+
+    public int size() {
+        return index.read(Days::size);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refresh() {
+        index.refresh();
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokeChanged(JokeChangedEvent event) {
+        if (event.isDeleted()) {
+            index.update(days -> days.remove(event.id()));
+        } else {
+            long day = event.joke().getDate().toEpochDay();
+            index.update(days -> days.add(event.id(), day));
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokesDeleted(JokesDeletedEvent event) {
+        long fromDay = event.from().toEpochDay();
+        long toDay = event.to().toEpochDay();
+        index.update(days -> days.removeRange(fromDay, toDay));
+    }
+
+    /**
+     * Jokes in slots {@code 0..size-1} for uniform picks, removed by moving the last slot into the gap.
+     * Per-day arrays cover {@code base..base+span-1}: the slot holding each day, and a Fenwick tree of
+     * jokes per day for picks within a range. A joke too far from the rest for the span to reach is kept
+     * aside in a sorted map instead, and picks reaching it walk that map. Not thread-safe.
+     */
+    static final class Days {
+
+        private static final int NONE = -1;
+
+        private long base;
+        private int[] slotOfDay = new int[0];
+        private int[] tree = new int[1];
+        private long[] slotDays = new long[16];
+        private long[] slotIds = new long[16];
+        private int size;
+        private final LongObjectMap<Integer> idSlots = new LongObjectMap<>(16);
+        // Jokes outside the span: the id on each day, and the day of each id.
+        private final NavigableMap<Long, Long> outside = new TreeMap<>();
+        private final LongObjectMap<Long> outsideDays = new LongObjectMap<>(16);
+
+        /**
+         * Records the joke {@code id} on {@code day}, moving it if it was on another day and replacing
+         * any other joke on that day.
+         */
+        void add(long id, long day) {
+            remove(id);
+            if (!cover(day)) {
+                addOutside(id, day);
+                return;
+            }
+            int index = (int) (day - base);
+            if (slotOfDay[index] != NONE) {
+                idSlots.remove(slotIds[slotOfDay[index]]);
+                removeSlot(slotOfDay[index]);
+            }
+            if (size == slotDays.length) {
+                slotDays = Arrays.copyOf(slotDays, size * 2);
+                slotIds = Arrays.copyOf(slotIds, size * 2);
+            }
+            slotDays[size] = day;
+            slotIds[size] = id;
+            slotOfDay[index] = size;
+            idSlots.put(id, size);
+            size++;
+            increment(index, 1);
+        }
+
+        void remove(long id) {
+            Integer slot = idSlots.remove(id);
+            if (slot != null) {
+                removeSlot(slot);
+                return;
+            }
+            Long day = outsideDays.remove(id);
+            if (day != null) {
+                outside.remove(day);
+            }
+        }
+
+        int size() {
+            return size + outside.size();
+        }
+
+        void removeRange(long fromDay, long toDay) {
+            long first = Math.max(fromDay, base);
+            long last = Math.min(toDay, base + slotOfDay.length - 1);
+            for (long day = first; day <= last; day++) {
+                int slot = slotOfDay[(int) (day - base)];
+                if (slot != NONE) {
+                    idSlots.remove(slotIds[slot]);
+                    removeSlot(slot);
+                }
+            }
+            if (fromDay <= toDay) {
+                NavigableMap<Long, Long> removed = outside.subMap(fromDay, true, toDay, true);
+                removed.values().forEach(outsideDays::remove);
+                removed.clear();
+            }
+        }
+
+        /**
+         * @return the day of a uniformly chosen joke between the days inclusive, or {@code Long.MIN_VALUE} if there is none
+         */
+        long pick(long fromDay, long toDay, RandomGenerator random) {
+            if (size() == 0 || fromDay > toDay) {
+                return Long.MIN_VALUE;
+            }
+            NavigableMap<Long, Long> outsideInRange = outside.isEmpty() ? outside : outside.subMap(fromDay, true, toDay, true);
+            long first = Math.max(fromDay, base);
+            long last = Math.min(toDay, base + slotOfDay.length - 1);
+            boolean whole = first == base && last == base + slotOfDay.length - 1;
+            int below = 0;
+            int count = 0;
+            if (whole) {
+                count = size;
+            } else if (first <= last) {
+                below = prefix((int) (first - base));
+                count = prefix((int) (last - base) + 1) - below;
+            }
+            int total = count + outsideInRange.size();
+            if (total == 0) {
+                return Long.MIN_VALUE;
+            }
+            int k = random.nextInt(total);
+            if (k < count) {
+                return whole ? slotDays[k] : base + select(below + k);
+            }
+            return outsideInRange.keySet().stream().skip(k - count).findFirst().orElseThrow();
+        }
+
+        private void addOutside(long id, long day) {
+            log.warn("Joke {} on {} is more than {} days from the others; random picks reaching it are no longer O(log n)",
+                    id, LocalDate.ofEpochDay(day), MAX_SPAN_DAYS);
+            Long replaced = outside.put(day, id);
+            if (replaced != null) {
+                outsideDays.remove(replaced);
+            }
+            outsideDays.put(id, day);
+        }
+
+        private void removeSlot(int slot) {
+            long day = slotDays[slot];
+            slotOfDay[(int) (day - base)] = NONE;
+            increment((int) (day - base), -1);
+            int last = --size;
+            if (slot != last) {
+                slotDays[slot] = slotDays[last];
+                slotIds[slot] = slotIds[last];
+                slotOfDay[(int) (slotDays[slot] - base)] = slot;
+                idSlots.put(slotIds[slot], slot);
+            }
+        }
+
+        // Grows the per-day arrays, at least doubling them, so that they cover the day.
+        private boolean cover(long day) {
+            int span = slotOfDay.length;
+            if (span > 0 && day >= base && day < base + span) {
+                return true;
+            }
+            long first = span == 0 ? day : Math.min(base, day);
+            long last = span == 0 ? day : Math.max(base + span - 1, day);
+            if (last - first + 1 > MAX_SPAN_DAYS) {
+                return false;
+            }
+            int grown = (int) Math.min(MAX_SPAN_DAYS, Math.max(last - first + 1, Math.max(1024, span * 2L)));
+            // Spare room goes on the side that grew.
+            long newBase = span > 0 && day < base ? last - grown + 1 : first;
+
+            int[] slots = new int[grown];
+            Arrays.fill(slots, NONE);
+            if (span > 0) {
+                System.arraycopy(slotOfDay, 0, slots, (int) (base - newBase), span);
+            }
+            base = newBase;
+            slotOfDay = slots;
+
+            // Linear-time Fenwick build.
+            tree = new int[grown + 1];
+            for (int i = 1; i <= grown; i++) {
+                tree[i] += slots[i - 1] == NONE ? 0 : 1;
+                int parent = i + (i & -i);
+                if (parent <= grown) {
+                    tree[parent] += tree[i];
+                }
+            }
+            return true;
+        }
+
+        private void increment(int index, int delta) {
+            for (int i = index + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        // Jokes on the first n days of the span.
+        private int prefix(int n) {
+            int sum = 0;
+            for (int i = n; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        // Index of the day holding the k-th joke (0-based) of the span.
+        private int select(int k) {
+            int position = 0;
+            for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+                int next = position + step;
+                if (next < tree.length && tree[next] <= k) {
+                    position = next;
+                    k -= tree[next];
+                }
+            }
+            return position;
+        }
+    }
+}
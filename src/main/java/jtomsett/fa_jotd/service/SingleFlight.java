@@ -0,0 +1,249 @@
+package jtomsett.fa_jotd.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import jtomsett.fa_jotd.exceptions.LookupTimeoutException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader and every caller
+ * arriving before it finishes waits on its result, or its exception, instead of issuing the same
+ * query. Waiters give up after {@code maxWait} with a {@link LookupTimeoutException}; the load
+ * itself carries on for the next caller.
+ * <p>
+ * Backed by a cache, results are kept and later callers are cache hits. Without one, only the
+ * load in flight is shared and the next caller after it completes loads again.
+ */
+public final class SingleFlight<K, V> {
+
+    private final AsyncCache<K, V> cache;
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight;
+    private final Duration maxWait;
+    private final LongAdder coalesced = new LongAdder();
+
+    public SingleFlight(AsyncCache<K, V> cache, Duration maxWait) {
+        this.cache = cache;
+        this.inFlight = null;
+        this.maxWait = maxWait;
+    }
+
+    public SingleFlight(Duration maxWait) {
+        this.cache = null;
+        this.inFlight = new ConcurrentHashMap<>();
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Returns the value for the key, running the loader on the calling thread if no load is in flight.
+     * The load runs outside the cache's internal locks, so a blocking query never pins the carrier of
+     * a virtual thread.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> future = join(key, created);
+        if (future == created) {
+            try {
+                V value = loader.apply(key);
+                created.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                created.completeExceptionally(e);
+                throw e;
+            } finally {
+                leave(key, created);
+            }
+        }
+
+        if (!future.isDone()) {
+            coalesced.increment();
+        }
+        try {
+            return unwrap(() -> future.get(maxWait.toNanos(), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            throw new LookupTimeoutException(key, maxWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LookupTimeoutException(key, maxWait);
+        }
+    }
+
+    /**
+     * Returns the values for the keys in the order given, with one call to the loader on the calling
+     * thread for every key that has no value yet. Unlike {@link #get}, this never waits on another
+     * caller: a key whose load is in flight elsewhere is loaded again. A caller that has run its own
+     * load may still hold the database connection it used, and waiting while holding it can starve the
+     * very load it waits on.
+     *
+     * @param loader given the keys to load, returns a value for each of them
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys, Function<? super Set<K>, ? extends Map<K, V>> loader) {
+        Batch<K, V> batch = batch(keys);
+        if (!batch.missing().isEmpty()) {
+            try {
+                batch.loaded(loader.apply(batch.missing()));
+            } catch (RuntimeException | Error e) {
+                batch.failed(e);
+                throw e;
+            } finally {
+                batch.created().forEach(this::leave);
+            }
+        }
+        return batch.values();
+    }
+
+    /**
+     * {@link #getAll} without blocking: the loader returns its values as a future, and keys in flight
+     * elsewhere are loaded again just the same.
+     */
+    public CompletableFuture<Map<K, V>> getAllAsync(Collection<? extends K> keys,
+                                                    Function<? super Set<K>, ? extends CompletableFuture<? extends Map<K, V>>> loader) {
+        Batch<K, V> batch = batch(keys);
+        if (batch.missing().isEmpty()) {
+            return CompletableFuture.completedFuture(batch.values());
+        }
+        CompletableFuture<? extends Map<K, V>> loading;
+        try {
+            loading = loader.apply(batch.missing());
+        } catch (RuntimeException | Error e) {
+            loading = CompletableFuture.failedFuture(e);
+        }
+        return loading.handle((loaded, failure) -> {
+            try {
+                if (failure != null) {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    batch.failed(cause);
+                    throw new CompletionException(cause);
+                }
+                batch.loaded(loaded);
+                return batch.values();
+            } finally {
+                batch.created().forEach(this::leave);
+            }
+        });
+    }
+
+    /**
+     * Returns the value for the key without blocking, starting the loader if no load is in flight.
+     * Waiters get their own copy of the shared future, so a waiter timing out does not fail the load.
+     */
+    public CompletableFuture<V> getAsync(K key, Function<? super K, ? extends CompletableFuture<V>> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> future = join(key, created);
+        if (future == created) {
+            CompletableFuture<V> loading;
+            try {
+                loading = loader.apply(key);
+            } catch (RuntimeException | Error e) {
+                loading = CompletableFuture.failedFuture(e);
+            }
+            loading.whenComplete((value, failure) -> {
+                leave(key, created);
+                if (failure != null) {
+                    created.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+                } else {
+                    created.complete(value);
+                }
+            });
+            return created;
+        }
+
+        if (future.isDone()) {
+            return future;
+        }
+        coalesced.increment();
+        return future.copy()
+                .orTimeout(maxWait.toNanos(), TimeUnit.NANOSECONDS)
+                .exceptionallyCompose(failure -> CompletableFuture.failedFuture(
+                        failure instanceof TimeoutException ? new LookupTimeoutException(key, maxWait) : failure));
+    }
+
+    /**
+     * @return how many calls waited on another caller's load instead of running their own
+     */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    // Takes what is already known for each key and claims the loads of the keys nobody is loading.
+    private Batch<K, V> batch(Collection<? extends K> keys) {
+        Map<K, V> values = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> created = new LinkedHashMap<>();
+        Set<K> missing = new LinkedHashSet<>();
+        for (K key : keys) {
+            if (values.containsKey(key)) {
+                continue;
+            }
+            // Holds the key's place in the order until its value is known.
+            values.put(key, null);
+            CompletableFuture<V> mine = new CompletableFuture<>();
+            CompletableFuture<V> future = join(key, mine);
+            if (future == mine) {
+                created.put(key, mine);
+                missing.add(key);
+            } else if (future.isDone() && !future.isCompletedExceptionally()) {
+                values.put(key, future.join());
+            } else {
+                missing.add(key);
+            }
+        }
+        return new Batch<>(values, created, missing);
+    }
+
+    private CompletableFuture<V> join(K key, CompletableFuture<V> created) {
+        if (cache != null) {
+            return cache.get(key, (k, executor) -> created);
+        }
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        return existing == null ? created : existing;
+    }
+
+    private void leave(K key, CompletableFuture<V> created) {
+        if (inFlight != null) {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private static <V> V unwrap(Waiting<V> waiting) throws TimeoutException, InterruptedException {
+        try {
+            return waiting.get();
+        } catch (ExecutionException | CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    private record Batch<K, V>(Map<K, V> values, Map<K, CompletableFuture<V>> created, Set<K> missing) {
+
+        void loaded(Map<K, V> loaded) {
+            missing.forEach(key -> values.put(key, loaded.get(key)));
+            created.forEach((key, future) -> future.complete(loaded.get(key)));
+        }
+
+        void failed(Throwable failure) {
+            created.values().forEach(future -> future.completeExceptionally(failure));
+        }
+    }
+
+    private interface Waiting<V> {
+        V get() throws ExecutionException, TimeoutException, InterruptedException;
+    }
+}
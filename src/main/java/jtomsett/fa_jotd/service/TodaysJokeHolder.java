@@ -0,0 +1,136 @@
+package jtomsett.fa_jotd.service;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps today's joke in memory so the default {@code GET /joke} never reaches the repository.
+ * Tomorrow's joke is loaded shortly before midnight and swapped in at rollover; writes that
+ * touch either day are applied to the held references as they happen.
+ */
+@Component
+@RequiredArgsConstructor
+public class TodaysJokeHolder {
+
+    private final JokeRepository jokeRepository;
+    private final Clock clock;
+
+    private final AtomicReference<DailyJoke> today = new AtomicReference<>();
+    private final AtomicReference<DailyJoke> tomorrow = new AtomicReference<>();
+
+    // Bumped on every change so a load that raced with a write can be detected and retried.
+    private final AtomicLong generation = new AtomicLong();
+
+    public Optional<Joke> get() {
+        LocalDate date = LocalDate.now(clock);
+        DailyJoke current = today.get();
+        if (current == null || !current.date().equals(date)) {
+            current = rollover(date);
+        }
+        return Optional.ofNullable(current.joke());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refresh() {
+        LocalDate date = LocalDate.now(clock);
+        install(tomorrow, date.plusDays(1));
+        install(today, date);
+    }
+
+    @Scheduled(cron = "${jotd.today.preload-cron:0 59 23 * * *}")
+    public void preloadTomorrow() {
+        install(tomorrow, LocalDate.now(clock).plusDays(1));
+    }
+
+    @Scheduled(cron = "${jotd.today.rollover-cron:0 0 0 * * *}")
+    public void rollover() {
+        rollover(LocalDate.now(clock));
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokeChanged(JokeChangedEvent event) {
+        generation.incrementAndGet();
+        today.updateAndGet(slot -> apply(slot, event));
+        tomorrow.updateAndGet(slot -> apply(slot, event));
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJokesDeleted(JokesDeletedEvent event) {
+        generation.incrementAndGet();
+        today.updateAndGet(slot -> slot != null && event.covers(slot.date()) ? new DailyJoke(slot.date(), null) : slot);
+        tomorrow.updateAndGet(slot -> slot != null && event.covers(slot.date()) ? new DailyJoke(slot.date(), null) : slot);
+    }
+
+    private DailyJoke rollover(LocalDate date) {
+        while (true) {
+            DailyJoke current = today.get();
+            if (current != null && current.date().equals(date)) {
+                return current;
+            }
+
+            long seen = generation.get();
+            DailyJoke next = tomorrow.get();
+            DailyJoke fresh = next != null && next.date().equals(date) ? next : read(date);
+            if (today.compareAndSet(current, fresh)) {
+                // A change applied to the old slot between the read and the swap never reached fresh.
+                if (generation.get() != seen) {
+                    install(today, date);
+                }
+                return today.get();
+            }
+        }
+    }
+
+    // Reads the slot's joke and stores it, again if a change landed at any point before the store was seen.
+    private void install(AtomicReference<DailyJoke> slot, LocalDate date) {
+        while (true) {
+            long seen = generation.get();
+            slot.set(read(date));
+            if (generation.get() == seen) {
+                return;
+            }
+        }
+    }
+
+    DailyJoke read(LocalDate date) {
+        return new DailyJoke(date, jokeRepository.findByDate(date).orElse(null));
+    }
+
+    private static DailyJoke apply(DailyJoke slot, JokeChangedEvent event) {
+        if (slot == null) {
+            return null;
+        }
+
+        if (!event.isDeleted() && slot.date().equals(event.joke().getDate())) {
+            return new DailyJoke(slot.date(), event.joke());
+        }
+
+        if (slot.joke() != null && Objects.equals(slot.joke().getId(), event.id())) {
+            return new DailyJoke(slot.date(), null);
+        }
+
+        return slot;
+    }
+
+    record DailyJoke(LocalDate date, Joke joke) {
+    }
+}
@@ -0,0 +1,235 @@
+package jtomsett.fa_jotd;
+
+import jtomsett.fa_jotd.controller.JokeRestController;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.service.JokeService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+
+/**
+ * The "reactive" profile serves the read endpoints from WebFlux routes over R2DBC, with the same
+ * JSON and status codes as {@link JokeRestController}. Jokes are written through the JPA service.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:reactive-stack",
+		"jotd.reactive.url=r2dbc:pool:h2:mem:///reactive-stack",
+		"management.server.port=0"})
+@ActiveProfiles("reactive")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReactiveStackTests {
+
+	private static final LocalDate START = LocalDate.of(2021, 3, 1);
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private JokeService jokeService;
+
+	@Autowired
+	private Clock clock;
+
+	@LocalServerPort
+	private int port;
+
+	private Long firstId;
+
+	@BeforeAll
+	void beforeAll() {
+		for (int i = 0; i < 5; i++) {
+			Joke joke = new Joke("Reactive Joke " + i, START.plusDays(i));
+			joke.setDescription(i == 0 ? "A chicken crossed" : null);
+			Joke saved = jokeService.addJoke(joke);
+			if (i == 0) {
+				firstId = saved.getId();
+			}
+		}
+		jokeService.addJoke(new Joke("Today's Reactive Joke", LocalDate.now(clock)));
+	}
+
+	@Test
+	void reactiveProfile_servesRoutesInsteadOfController() {
+		assertThat(context.getBeanNamesForType(JokeRestController.class)).isEmpty();
+	}
+
+	@Test
+	void getJoke_byIdDateAndToday() {
+		client.get().uri("/joke?id={id}", firstId).exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentType(MediaType.APPLICATION_JSON)
+				.expectHeader().exists(HttpHeaders.ETAG)
+				.expectHeader().value(HttpHeaders.CACHE_CONTROL, startsWith("max-age="))
+				.expectBody()
+				.jsonPath("$.id").isEqualTo(firstId)
+				.jsonPath("$.joke").isEqualTo("Reactive Joke 0")
+				.jsonPath("$.date").isEqualTo(START.toString())
+				.jsonPath("$.description").isEqualTo("A chicken crossed");
+
+		client.get().uri("/joke?date={date}", START.plusDays(2)).exchange()
+				.expectStatus().isOk()
+				.expectBody().jsonPath("$.joke").isEqualTo("Reactive Joke 2");
+
+		client.get().uri("/joke").exchange()
+				.expectStatus().isOk()
+				.expectBody().jsonPath("$.joke").isEqualTo("Today's Reactive Joke");
+	}
+
+	@Test
+	void getJoke_notFoundAndBadRequest() {
+		client.get().uri("/joke?id=999999").exchange()
+				.expectStatus().isNotFound();
+		client.get().uri("/joke?date={date}", START.minusDays(1)).exchange()
+				.expectStatus().isNotFound();
+		client.get().uri("/joke?id=abc").exchange()
+				.expectStatus().isBadRequest();
+		client.get().uri("/joke?date=yesterday").exchange()
+				.expectStatus().isBadRequest();
+	}
+
+	@Test
+	void getJoke_conditionalAndGzip() throws Exception {
+		EntityExchangeResult<byte[]> first = client.get().uri("/joke?id={id}", firstId).exchange()
+				.expectStatus().isOk()
+				.expectBody().returnResult();
+		String etag = first.getResponseHeaders().getETag();
+
+		client.get().uri("/joke?id={id}", firstId)
+				.header(HttpHeaders.IF_NONE_MATCH, etag)
+				.exchange()
+				.expectStatus().isNotModified()
+				.expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+				.expectBody().isEmpty();
+
+		// Reactor Netty's client strips Content-Encoding from what it hands WebTestClient, so ask over plain HTTP.
+		HttpResponse<byte[]> gzip = HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/joke?id=" + firstId))
+				.header(HttpHeaders.ACCEPT_ENCODING, "gzip").build(), HttpResponse.BodyHandlers.ofByteArray());
+		assertThat(gzip.statusCode()).isEqualTo(200);
+		assertThat(gzip.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).contains("gzip");
+		assertThat(gzip.headers().firstValue(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT_ENCODING);
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.body()))) {
+			assertThat(in.readAllBytes()).isEqualTo(first.getResponseBody());
+		}
+	}
+
+	@Test
+	void getRandomJoke_withinRange() {
+		client.get().uri("/joke/random?from={from}&to={to}", START.plusDays(3), START.plusDays(3)).exchange()
+				.expectStatus().isOk()
+				.expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-store")
+				.expectBody().jsonPath("$.joke").isEqualTo("Reactive Joke 3");
+
+		client.get().uri("/joke/random?from={from}&to={to}", START.minusDays(10), START.minusDays(5)).exchange()
+				.expectStatus().isNotFound();
+		client.get().uri("/joke/random?from={from}&to={to}", START.plusDays(3), START).exchange()
+				.expectStatus().isBadRequest();
+	}
+
+	@Test
+	void getJokes_pagesThroughRange() {
+		client.get().uri("/jokes?from={from}&to={to}&limit=3", START, START.plusDays(4)).exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.jokes.length()").isEqualTo(3)
+				.jsonPath("$.jokes[0].joke").isEqualTo("Reactive Joke 0")
+				.jsonPath("$.next").isEqualTo(START.plusDays(2).toString());
+
+		client.get().uri("/jokes?from={from}&to={to}&limit=3&after={after}", START, START.plusDays(4), START.plusDays(2)).exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.jokes.length()").isEqualTo(2)
+				.jsonPath("$.jokes[1].joke").isEqualTo("Reactive Joke 4")
+				.jsonPath("$.next").doesNotExist();
+
+		client.get().uri("/jokes?from={from}&to={to}", START.plusDays(4), START).exchange()
+				.expectStatus().isBadRequest();
+		client.get().uri("/jokes?from={from}&to={to}&limit=0", START, START.plusDays(4)).exchange()
+				.expectStatus().isBadRequest();
+		client.get().uri("/jokes?from={from}", START).exchange()
+				.expectStatus().isBadRequest();
+	}
+
+	@Test
+	void getJokesById_inRequestOrder() {
+		String ids = (firstId + 2) + ",999999," + firstId;
+		client.get().uri("/jokes?ids={ids}", ids).exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[0].status").isEqualTo("FOUND")
+				.jsonPath("$[0].joke.joke").isEqualTo("Reactive Joke 2")
+				.jsonPath("$[1].id").isEqualTo(999999)
+				.jsonPath("$[1].status").isEqualTo("NOT_FOUND")
+				.jsonPath("$[2].joke.joke").isEqualTo("Reactive Joke 0");
+
+		client.post().uri("/jokes/lookup")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("[" + ids + "]")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[1].status").isEqualTo("NOT_FOUND")
+				.jsonPath("$[2].joke.joke").isEqualTo("Reactive Joke 0");
+
+		client.get().uri("/jokes?ids=").exchange()
+				.expectStatus().isBadRequest();
+		client.get().uri("/jokes?ids=1,two").exchange()
+				.expectStatus().isBadRequest();
+		client.post().uri("/jokes/lookup")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("[]")
+				.exchange()
+				.expectStatus().isBadRequest();
+	}
+
+	@Test
+	void searchJokes_ranksHits() {
+		client.get().uri("/jokes/search?q=chicken").exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].id").isEqualTo(firstId);
+
+		client.get().uri("/jokes/search?q=chicken&limit=0").exchange()
+				.expectStatus().isBadRequest();
+	}
+
+	@Test
+	void exportJokes_streamsNdjson() {
+		String body = new String(client.get().uri("/jokes/export?from={from}&to={to}", START.plusDays(1), START.plusDays(3)).exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.expectBody().returnResult().getResponseBody(), StandardCharsets.UTF_8);
+
+		String[] lines = body.strip().split("\n");
+		assertThat(lines).hasSize(3);
+		assertThat(lines[0]).contains("\"joke\":\"Reactive Joke 1\"");
+		assertThat(lines[2]).contains("\"joke\":\"Reactive Joke 3\"");
+	}
+}
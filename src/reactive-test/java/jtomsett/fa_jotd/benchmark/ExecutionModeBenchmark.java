@@ -0,0 +1,70 @@
+package jtomsett.fa_jotd.benchmark;
+
+import jtomsett.fa_jotd.FaJotdApplication;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.service.JokeService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares Tomcat's platform-thread pool with the "virtual" profile and the "reactive" profile's
+ * WebFlux routes at high concurrency. Caches are disabled so every request reaches the database,
+ * through a blocking JPA lookup on Tomcat and through R2DBC on Netty.
+ * <p>
+ * {@code mvn test -Pbenchmark,reactive -Dtest=ExecutionModeBenchmark -Djotd.benchmark.concurrency=10000}
+ */
+@Tag("benchmark")
+class ExecutionModeBenchmark {
+
+    private static final int CONCURRENCY = Integer.getInteger("jotd.benchmark.concurrency", 1000);
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("jotd.benchmark.warmup-seconds", 5));
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("jotd.benchmark.duration-seconds", 20));
+    private static final int DAYS = 365;
+
+    @Test
+    void executionModes() throws Exception {
+        LoadDriver.Result platform = run("platform", null);
+        LoadDriver.Result virtual = run("virtual", "virtual");
+        LoadDriver.Result reactive = run("reactive", "reactive");
+
+        System.out.println("GET /joke?date= with " + CONCURRENCY + " concurrent clients");
+        System.out.println(platform.summary("platform threads"));
+        System.out.println(virtual.summary("virtual threads"));
+        System.out.println(reactive.summary("reactive"));
+    }
+
+    private static LoadDriver.Result run(String name, String profile) throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(FaJotdApplication.class);
+        if (profile != null) {
+            builder.profiles(profile);
+        }
+
+        // Arguments, not builder properties, so they override application.properties. The bulkhead only
+        // filters the servlet stack and would cap its reads at the pool, so it is off for all three.
+        try (ConfigurableApplicationContext context = builder.run("--server.port=0",
+                "--management.server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark-" + name,
+                "--jotd.reactive.url=r2dbc:pool:h2:mem:///benchmark-" + name + "?maxSize=20",
+                "--jotd.lookup-cache.max-size=0",
+                "--jotd.response-cache.max-size=0",
+                "--jotd.bulkhead.enabled=false")) {
+            JokeService jokeService = context.getBean(JokeService.class);
+            LocalDate start = LocalDate.now();
+            for (int i = 0; i < DAYS; i++) {
+                jokeService.addJoke(new Joke("Joke " + i, start.plusDays(i)));
+            }
+
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/joke?date=";
+            return LoadDriver.run(CONCURRENCY, WARMUP, DURATION, () -> HttpRequest.newBuilder(
+                    URI.create(base + start.plusDays(ThreadLocalRandom.current().nextInt(DAYS)))).GET().build());
+        }
+    }
+}
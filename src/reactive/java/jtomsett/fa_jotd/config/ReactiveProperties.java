@@ -0,0 +1,18 @@
+package jtomsett.fa_jotd.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * R2DBC connection for the reactive read path, set in the "reactive" profile. Kept apart from
+ * {@code spring.r2dbc} because a {@code ConnectionFactory} bean would switch off the JDBC
+ * {@code DataSource} that JPA still needs for writes.
+ *
+ * @param url      R2DBC url of the database, {@code r2dbc:pool:} to pool connections
+ * @param username database user
+ * @param password database password
+ */
+@ConfigurationProperties("jotd.reactive")
+public record ReactiveProperties(String url,
+                                 String username,
+                                 String password) {
+}
@@ -0,0 +1,178 @@
+package jtomsett.fa_jotd.controller;
+
+import jtomsett.fa_jotd.controller.JokeResponseCache.SerializedJoke;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.JokePage;
+import jtomsett.fa_jotd.exceptions.JokeNotFoundException;
+import jtomsett.fa_jotd.service.ReactiveJokeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * The read endpoints of {@link JokeRestController} as WebFlux handler functions, with the same
+ * JSON, headers and status codes. Errors are left to Boot's error handler, which maps
+ * {@link JokeNotFoundException} to 404 and bad parameters to 400 just as the servlet stack does.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class JokeHandler {
+
+    private final ReactiveJokeService reactiveJokeService;
+    private final JokeResponseCache jokeResponseCache;
+    private final Clock clock;
+
+    public Mono<ServerResponse> getJoke(ServerRequest request) {
+        Long id = param(request, "id", Long::valueOf);
+        LocalDate date = param(request, "date", LocalDate::parse);
+        Mono<SerializedJoke> joke;
+        if (id != null) {
+            joke = Mono.fromFuture(() -> jokeResponseCache.getByIdAsync(id, () -> reactiveJokeService.getJokeById(id)))
+                    .map(found -> found.orElseThrow(() -> new JokeNotFoundException(id)));
+        } else {
+            LocalDate day = date != null ? date : LocalDate.now(clock);
+            joke = Mono.fromFuture(() -> jokeResponseCache.getByDateAsync(day, () -> reactiveJokeService.getJokeByDate(day)))
+                    .map(found -> found.orElseThrow(() -> new JokeNotFoundException(day)));
+        }
+
+        return joke.flatMap(found -> {
+            LocalDateTime now = LocalDateTime.now(clock);
+            CacheControl cacheControl = CacheControl.maxAge(Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()))
+                    .cachePublic();
+            return toResponse(request, found, cacheControl, true);
+        });
+    }
+
+    public Mono<ServerResponse> getRandomJoke(ServerRequest request) {
+        LocalDate from = param(request, "from", LocalDate::parse);
+        LocalDate to = param(request, "to", LocalDate::parse);
+        return reactiveJokeService.getRandomJoke(from, to)
+                .switchIfEmpty(Mono.error(() -> new JokeNotFoundException(from, to)))
+                .flatMap(random -> Mono.fromFuture(() ->
+                        jokeResponseCache.getByDateAsync(random.getDate(), () -> Mono.just(Optional.of(random)).toFuture())))
+                // Every call should draw again, so nothing downstream may keep the answer.
+                .flatMap(joke -> toResponse(request, joke.orElseThrow(), CacheControl.noStore(), false));
+    }
+
+    public Mono<ServerResponse> getJokes(ServerRequest request) {
+        LocalDate from = required(request, "from", LocalDate::parse);
+        LocalDate to = required(request, "to", LocalDate::parse);
+        Integer limit = param(request, "limit", Integer::valueOf);
+        LocalDate after = param(request, "after", LocalDate::parse);
+        return reactiveJokeService.getJokes(from, to, limit == null ? 31 : limit, after)
+                .flatMap(page -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(page));
+    }
+
+    public Mono<ServerResponse> getJokesById(ServerRequest request) {
+        List<Long> ids = ids(request);
+        return reactiveJokeService.getJokesById(ids)
+                .flatMap(results -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(results));
+    }
+
+    public Mono<ServerResponse> lookupJokes(ServerRequest request) {
+        return request.bodyToMono(new ParameterizedTypeReference<List<Long>>() {})
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Required request body is missing.")))
+                .flatMap(reactiveJokeService::getJokesById)
+                .flatMap(results -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(results));
+    }
+
+    public Mono<ServerResponse> searchJokes(ServerRequest request) {
+        String q = required(request, "q", Function.identity());
+        Integer limit = param(request, "limit", Integer::valueOf);
+        return reactiveJokeService.searchJokes(q, limit == null ? 20 : limit)
+                .collectList()
+                .flatMap(jokes -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(jokes));
+    }
+
+    // Rows are written as the client reads them, so the export holds one batch of jokes at a time.
+    public Mono<ServerResponse> exportJokes(ServerRequest request) {
+        LocalDate from = param(request, "from", LocalDate::parse);
+        LocalDate to = param(request, "to", LocalDate::parse);
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(reactiveJokeService.exportJokes(from, to), Joke.class);
+    }
+
+    private static Mono<ServerResponse> toResponse(ServerRequest request, SerializedJoke joke, CacheControl cacheControl,
+                                                   boolean conditional) {
+        HttpHeaders headers = request.headers().asHttpHeaders();
+        if (conditional && joke.matches(headers.getFirst(HttpHeaders.IF_NONE_MATCH))) {
+            return ServerResponse.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(joke.etag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        ServerResponse.BodyBuilder response = ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(joke.etag())
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+        String acceptEncoding = headers.getFirst(HttpHeaders.ACCEPT_ENCODING);
+        if (AcceptEncoding.allowsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").bodyValue(joke.gzip());
+        }
+        return response.bodyValue(joke.json());
+    }
+
+    // Blank values count as absent, as they do for @RequestParam.
+    private static <T> T param(ServerRequest request, String name, Function<String, T> parser) {
+        Optional<String> value = request.queryParam(name).filter(text -> !text.isBlank());
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return parser.apply(value.get().trim());
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new ServerWebInputException("Invalid value for parameter '" + name + "': " + value.get(), null, e);
+        }
+    }
+
+    // Comma separated or repeated, as @RequestParam List<Long> reads them; an empty element is a null id.
+    private static List<Long> ids(ServerRequest request) {
+        List<String> values = request.queryParams().getOrDefault("ids", List.of());
+        if (values.stream().allMatch(String::isBlank)) {
+            throw new ServerWebInputException("Required parameter 'ids' is not present.");
+        }
+        List<Long> ids = new ArrayList<>();
+        for (String value : values) {
+            for (String id : value.split(",", -1)) {
+                try {
+                    ids.add(id.isBlank() ? null : Long.valueOf(id.trim()));
+                } catch (NumberFormatException e) {
+                    throw new ServerWebInputException("Invalid value for parameter 'ids': " + value, null, e);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static <T> T required(ServerRequest request, String name, Function<String, T> parser) {
+        T value = param(request, name, parser);
+        if (value == null) {
+            throw new ServerWebInputException("Required parameter '" + name + "' is not present.");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,32 @@
+package jtomsett.fa_jotd.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Functional routes for the "reactive" profile. Only the reads are served, including the lookup
+ * sent as a POST; writes go to a node running the servlet stack against the same database.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class JokeRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> jokeRoutes(JokeHandler jokeHandler) {
+        return route()
+                .GET("/joke/random", jokeHandler::getRandomJoke)
+                .GET("/joke", jokeHandler::getJoke)
+                .GET("/jokes/search", jokeHandler::searchJokes)
+                .GET("/jokes/export", jokeHandler::exportJokes)
+                .GET("/jokes", queryParam("ids", ids -> true), jokeHandler::getJokesById)
+                .GET("/jokes", jokeHandler::getJokes)
+                .POST(JokeRestController.LOOKUP_PATH, jokeHandler::lookupJokes)
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package jtomsett.fa_jotd.repository;
+
+import io.r2dbc.spi.Closeable;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import jtomsett.fa_jotd.config.ReactiveProperties;
+import jtomsett.fa_jotd.dao.Joke;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Non-blocking reads of the joke table over R2DBC, for the reactive read path. Writes stay on
+ * {@link JokeRepository}, so the schema and every change event still come from JPA. The connection
+ * pool belongs to this repository rather than the context, see {@link ReactiveProperties}.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveJokeRepository implements DisposableBean {
+
+    private static final String SELECT = "select j.id, j.joke, j.date, j.description, j.version from joke j ";
+
+    private final ConnectionFactory connectionFactory;
+    private final DatabaseClient databaseClient;
+
+    public ReactiveJokeRepository(ReactiveProperties properties) {
+        this.connectionFactory = ConnectionFactoryBuilder.withUrl(properties.url())
+                .username(properties.username())
+                .password(properties.password())
+                .build();
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+    }
+
+    public Mono<Joke> findById(Long id) {
+        return databaseClient.sql(SELECT + "where j.id = :id")
+                .bind("id", id)
+                .map(ReactiveJokeRepository::toJoke)
+                .one();
+    }
+
+    public Flux<Joke> findAllById(Collection<Long> ids) {
+        return databaseClient.sql(SELECT + "where j.id in (:ids)")
+                .bind("ids", ids)
+                .map(ReactiveJokeRepository::toJoke)
+                .all();
+    }
+
+    public Mono<Joke> findByDate(LocalDate date) {
+        return databaseClient.sql(SELECT + "where j.date = :date")
+                .bind("date", date)
+                .map(ReactiveJokeRepository::toJoke)
+                .one();
+    }
+
+    public Flux<Joke> findByDateBetweenOrderByDateAsc(LocalDate from, LocalDate to, int limit) {
+        return databaseClient.sql(SELECT + "where j.date between :from and :to order by j.date limit :limit")
+                .bind("from", from)
+                .bind("to", to)
+                .bind("limit", limit)
+                .map(ReactiveJokeRepository::toJoke)
+                .all();
+    }
+
+    /**
+     * Streams jokes in date order; rows are requested from the driver as the subscriber asks for them.
+     *
+     * @param from first date to include, or {@code null} for no lower bound
+     * @param to   last date to include, or {@code null} for no upper bound
+     */
+    public Flux<Joke> findAll(LocalDate from, LocalDate to) {
+        String where = from == null && to == null ? "" : from == null ? "where j.date <= :to "
+                : to == null ? "where j.date >= :from " : "where j.date between :from and :to ";
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(SELECT + where + "order by j.date");
+        if (from != null) {
+            spec = spec.bind("from", from);
+        }
+        if (to != null) {
+            spec = spec.bind("to", to);
+        }
+        return spec.map(ReactiveJokeRepository::toJoke).all();
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionFactory instanceof Closeable closeable) {
+            Mono.from(closeable.close()).block();
+        }
+    }
+
+    private static Joke toJoke(Readable row) {
+        Joke joke = new Joke(row.get("joke", String.class), row.get("date", LocalDate.class));
+        joke.setId(row.get("id", Long.class));
+        joke.setDescription(row.get("description", String.class));
+        joke.setVersion(row.get("version", Long.class));
+        return joke;
+    }
+}
@@ -0,0 +1,132 @@
+package jtomsett.fa_jotd.service;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.JokeLookupResult;
+import jtomsett.fa_jotd.dto.JokePage;
+import jtomsett.fa_jotd.exceptions.InvalidRangeException;
+import jtomsett.fa_jotd.repository.ReactiveJokeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static jtomsett.fa_jotd.service.JokeServiceImpl.MAX_PAGE_SIZE;
+
+/**
+ * The read side of {@link JokeService} without blocking: lookups share the same caches and
+ * in-memory indexes, and misses go to {@link ReactiveJokeRepository}. Validation and error
+ * messages match {@link JokeServiceImpl}.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveJokeService {
+
+    private final ReactiveJokeRepository reactiveJokeRepository;
+    private final JokeLookupCache jokeLookupCache;
+    private final RandomJokeIndex randomJokeIndex;
+    private final JokeSearchIndex jokeSearchIndex;
+
+    public CompletableFuture<Optional<Joke>> getJokeById(Long id) {
+        if (id == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return jokeLookupCache.getByIdAsync(id, key -> optional(reactiveJokeRepository.findById(key)));
+    }
+
+    public Mono<List<JokeLookupResult>> getJokesById(List<Long> ids) {
+        if (ids == null || ids.isEmpty() || ids.size() > MAX_PAGE_SIZE) {
+            return Mono.error(new InvalidRangeException("Between 1 and " + MAX_PAGE_SIZE + " ids can be fetched at once."));
+        }
+
+        List<Long> present = ids.stream().filter(Objects::nonNull).toList();
+        Mono<Map<Long, Optional<Joke>>> jokes = present.isEmpty() ? Mono.just(Map.of())
+                : Mono.fromFuture(() -> jokeLookupCache.getAllByIdAsync(present, this::findAllById));
+        return jokes.map(found -> ids.stream()
+                .map(id -> id == null ? JokeLookupResult.notFound(null)
+                        : found.get(id).map(JokeLookupResult::found).orElseGet(() -> JokeLookupResult.notFound(id)))
+                .toList());
+    }
+
+    // No TodaysJokeHolder here: its rollover load blocks, while a date lookup is one cache hit all day.
+    public CompletableFuture<Optional<Joke>> getJokeByDate(LocalDate date) {
+        if (date == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return jokeLookupCache.getByDateAsync(date, key -> optional(reactiveJokeRepository.findByDate(key)));
+    }
+
+    public Mono<JokePage> getJokes(LocalDate from, LocalDate to, int limit, LocalDate after) {
+        if (from == null || to == null || from.isAfter(to)) {
+            return Mono.error(new InvalidRangeException("A date range needs a from date on or before its to date."));
+        }
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Mono.error(new InvalidRangeException("Page size must be between 1 and " + MAX_PAGE_SIZE + "."));
+        }
+
+        // Dates are unique, so the next page starts the day after the cursor.
+        LocalDate start = after != null && !after.isBefore(from) ? after.plusDays(1) : from;
+        if (start.isAfter(to)) {
+            return Mono.just(new JokePage(List.of(), null));
+        }
+
+        return reactiveJokeRepository.findByDateBetweenOrderByDateAsc(start, to, limit + 1)
+                .collectList()
+                .map(jokes -> {
+                    if (jokes.size() <= limit) {
+                        return new JokePage(jokes, null);
+                    }
+                    List<Joke> page = jokes.subList(0, limit);
+                    return new JokePage(page, page.get(limit - 1).getDate());
+                });
+    }
+
+    public Mono<Joke> getRandomJoke(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return Mono.error(new InvalidRangeException("A date range needs a from date on or before its to date."));
+        }
+        return Mono.justOrEmpty(randomJokeIndex.pick(from, to))
+                .flatMap(date -> Mono.fromFuture(() -> getJokeByDate(date)))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    // Lookups for the hits run concurrently; flatMapSequential keeps the ranking.
+    public Flux<Joke> searchJokes(String query, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Flux.error(new InvalidRangeException("Page size must be between 1 and " + MAX_PAGE_SIZE + "."));
+        }
+        return Flux.defer(() -> Flux.fromIterable(jokeSearchIndex.search(query, limit)))
+                .flatMapSequential(id -> Mono.fromFuture(() -> getJokeById(id)))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    public Flux<Joke> exportJokes(LocalDate from, LocalDate to) {
+        return reactiveJokeRepository.findAll(from, to);
+    }
+
+    private CompletableFuture<Map<Long, Optional<Joke>>> findAllById(Set<Long> ids) {
+        return reactiveJokeRepository.findAllById(ids)
+                .collectMap(Joke::getId)
+                .map(jokes -> {
+                    Map<Long, Optional<Joke>> found = new HashMap<>(ids.size() * 2);
+                    ids.forEach(id -> found.put(id, Optional.ofNullable(jokes.get(id))));
+                    return found;
+                })
+                .toFuture();
+    }
+
+    private static <T> CompletableFuture<Optional<T>> optional(Mono<T> mono) {
+        return mono.map(Optional::of).defaultIfEmpty(Optional.empty()).toFuture();
+    }
+}
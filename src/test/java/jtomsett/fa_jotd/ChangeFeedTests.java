@@ -0,0 +1,182 @@
+package jtomsett.fa_jotd;
+
+import jtomsett.fa_jotd.controller.JokeResponseCache;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.service.JokeSearchIndex;
+import jtomsett.fa_jotd.service.JokeService;
+import jtomsett.fa_jotd.service.RandomJokeIndex;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Two nodes on one database with {@code jotd.change-feed.enabled}: a write on one node reaches the
+ * caches and indexes of the other within a poll or two.
+ */
+class ChangeFeedTests {
+
+	private static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+	private static final Duration MAX_LAG = Duration.ofSeconds(2);
+	private static final int BATCH_SIZE = 10;
+	private static final LocalDate DATE = LocalDate.of(2022, 6, 1);
+
+	private static ConfigurableApplicationContext writer;
+	private static ConfigurableApplicationContext reader;
+
+	@BeforeAll
+	static void beforeAll() {
+		writer = node();
+		reader = node();
+	}
+
+	@AfterAll
+	static void afterAll() {
+		reader.close();
+		writer.close();
+	}
+
+	@AfterEach
+	void afterEach() {
+		JdbcTestUtils.deleteFromTables(writer.getBean(JdbcTemplate.class), "joke", "joke_change");
+		for (ConfigurableApplicationContext node : List.of(writer, reader)) {
+			node.getBean(RandomJokeIndex.class).refresh();
+			node.getBean(JokeSearchIndex.class).refresh();
+			node.getBean(JokeResponseCache.class).invalidateAll();
+		}
+	}
+
+	@Test
+	void updateOnOneNode_reachesTheOther() {
+		JokeService writerService = writer.getBean(JokeService.class);
+		JokeService readerService = reader.getBean(JokeService.class);
+		Joke joke = writerService.addJoke(new Joke("Original punchline", DATE));
+		Long id = joke.getId();
+
+		// The reader's index only learns of the joke through the feed.
+		awaitConverged(() -> reader.getBean(RandomJokeIndex.class).size(), 1);
+		// The reader now holds the joke in its lookup cache.
+		assertThat(readerService.getJokeById(id).map(Joke::getJoke)).contains("Original punchline");
+		assertThat(readerService.getJokeByDate(DATE).map(Joke::getJoke)).contains("Original punchline");
+
+		joke.setJoke("Better punchline");
+		joke.setDate(DATE.plusDays(1));
+		writerService.updateJoke(joke);
+
+		// The listeners run one after another, so each view is awaited rather than asserted.
+		awaitConverged(() -> readerService.getJokeById(id).map(Joke::getJoke), Optional.of("Better punchline"));
+		awaitConverged(() -> readerService.getJokeByDate(DATE), Optional.empty());
+		awaitConverged(() -> readerService.getJokeByDate(DATE.plusDays(1)).map(Joke::getId), Optional.of(id));
+		awaitConverged(() -> reader.getBean(JokeSearchIndex.class).search("better", 10), List.of(id));
+		awaitConverged(() -> reader.getBean(RandomJokeIndex.class).pick(null, null), Optional.of(DATE.plusDays(1)));
+	}
+
+	@Test
+	void deletesOnOneNode_reachTheOther() {
+		JokeService writerService = writer.getBean(JokeService.class);
+		JokeService readerService = reader.getBean(JokeService.class);
+		Long first = writerService.addJoke(new Joke("First", DATE)).getId();
+		writerService.addJoke(new Joke("Second", DATE.plusDays(1)));
+		writerService.addJoke(new Joke("Third", DATE.plusDays(2)));
+		awaitConverged(() -> reader.getBean(RandomJokeIndex.class).size(), 3);
+		assertThat(readerService.getJokeById(first)).isPresent();
+		assertThat(readerService.getJokeByDate(DATE.plusDays(2))).isPresent();
+
+		writerService.deleteJoke(first);
+		awaitConverged(() -> readerService.getJokeById(first), Optional.empty());
+
+		writerService.deleteJokes(DATE.plusDays(1), DATE.plusDays(2));
+		awaitConverged(() -> readerService.getJokeByDate(DATE.plusDays(2)), Optional.empty());
+		awaitConverged(() -> reader.getBean(RandomJokeIndex.class).size(), 0);
+		awaitConverged(() -> reader.getBean(JokeSearchIndex.class).size(), 0);
+	}
+
+	@Test
+	void burstLargerThanBatchSize_reachesTheOther() {
+		JokeService writerService = writer.getBean(JokeService.class);
+		List<Joke> jokes = IntStream.range(0, BATCH_SIZE * 5)
+				.mapToObj(i -> new Joke("Burst " + i, DATE.plusDays(i)))
+				.toList();
+		writerService.addJokes(jokes);
+		// MAX_LAG is well under the default settle, so no batch may wait for the one before it to settle.
+		awaitConverged(() -> reader.getBean(RandomJokeIndex.class).size(), jokes.size());
+
+		writerService.deleteJokes(jokes.stream().map(Joke::getId).toList());
+		awaitConverged(() -> reader.getBean(RandomJokeIndex.class).size(), 0);
+	}
+
+	@Test
+	void failedFeedInsert_rollsBackTheAdd() {
+		JdbcTemplate jdbcTemplate = writer.getBean(JdbcTemplate.class);
+		JokeService writerService = writer.getBean(JokeService.class);
+		JokeService readerService = reader.getBean(JokeService.class);
+		assertThat(readerService.getJokeByDate(DATE)).isEmpty();
+		// No node id is empty, so every feed row is rejected.
+		jdbcTemplate.execute("alter table joke_change add constraint feed_down check (node = '')");
+		try {
+			assertThatThrownBy(() -> writerService.addJoke(new Joke("Never stored", DATE)))
+					.isInstanceOf(DataIntegrityViolationException.class);
+		} finally {
+			jdbcTemplate.execute("alter table joke_change drop constraint feed_down");
+		}
+
+		assertThat(JdbcTestUtils.countRowsInTable(jdbcTemplate, "joke")).isZero();
+		assertThat(writerService.getJokeByDate(DATE)).isEmpty();
+		// The date is still free.
+		writerService.addJoke(new Joke("Stored", DATE));
+		// The add reaches the reader through the feed, clearing its cached miss for the date.
+		awaitConverged(() -> readerService.getJokeByDate(DATE).map(Joke::getJoke), Optional.of("Stored"));
+	}
+
+	@Test
+	void replayedChanges_areNotWrittenBack() {
+		JdbcTemplate jdbcTemplate = writer.getBean(JdbcTemplate.class);
+		writer.getBean(JokeService.class).addJoke(new Joke("Only once", DATE));
+		reader.getBean(JokeService.class).addJoke(new Joke("Only once too", DATE.plusDays(1)));
+
+		awaitConverged(() -> reader.getBean(RandomJokeIndex.class).size(), 2);
+		awaitConverged(() -> writer.getBean(RandomJokeIndex.class).size(), 2);
+		assertThat(JdbcTestUtils.countRowsInTable(jdbcTemplate, "joke_change")).isEqualTo(2);
+	}
+
+	private static ConfigurableApplicationContext node() {
+		// Both nodes share the named in-memory database; only one may create and drop its schema.
+		return new SpringApplicationBuilder(FaJotdApplication.class)
+				.web(WebApplicationType.NONE)
+				.run("--spring.datasource.url=jdbc:h2:mem:change-feed;DB_CLOSE_DELAY=-1",
+						"--spring.jpa.hibernate.ddl-auto=update",
+						"--jotd.change-feed.enabled=true",
+						"--jotd.change-feed.poll-interval=" + POLL_INTERVAL.toMillis() + "ms",
+						"--jotd.change-feed.batch-size=" + BATCH_SIZE);
+	}
+
+	// Fails if the reader has not seen the expected value within MAX_LAG.
+	private static <T> void awaitConverged(Supplier<T> actual, T expected) {
+		long start = System.nanoTime();
+		while (!expected.equals(actual.get())) {
+			assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(MAX_LAG);
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -2,15 +2,32 @@ package jtomsett.fa_jotd;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import jtomsett.fa_jotd.controller.JokeResponseCache;
 import jtomsett.fa_jotd.controller.JokeRestController;
 import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.exceptions.JokeExistsForDateException;
+import jtomsett.fa_jotd.repository.StatementCounter;
+import jtomsett.fa_jotd.service.JokeLookupCache;
+import jtomsett.fa_jotd.service.JokeSearchIndex;
 import jtomsett.fa_jotd.service.JokeService;
+import jtomsett.fa_jotd.service.RandomJokeIndex;
+import jtomsett.fa_jotd.service.TodaysJokeHolder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.jdbc.JdbcTestUtils;
@@ -18,15 +35,27 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @AutoConfigureMockMvc
+@AutoConfigureObservability
 class FaJotdApplicationTests {
 
 	@Autowired
@@ -41,9 +70,48 @@ class FaJotdApplicationTests {
 	@Autowired
 	private JdbcTemplate jdbcTemplate;
 
+	@Autowired
+	private TodaysJokeHolder todaysJokeHolder;
+
+	@Autowired
+	private RandomJokeIndex randomJokeIndex;
+
+	@Autowired
+	private JokeSearchIndex jokeSearchIndex;
+
+	@Autowired
+	private JokeResponseCache jokeResponseCache;
+
+	@Autowired
+	private JokeLookupCache jokeLookupCache;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private StatementCounter statementCounter;
+
+	private QueryCounter queryCounter;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private PrometheusMeterRegistry prometheusMeterRegistry;
+
+	@BeforeEach
+	void beforeEach() {
+		queryCounter = new QueryCounter(statementCounter);
+	}
+
 	@AfterEach
 	void afterEach() throws DataAccessException {
 		JdbcTestUtils.deleteFromTables(jdbcTemplate, "joke");
+		todaysJokeHolder.refresh();
+		randomJokeIndex.refresh();
+		jokeSearchIndex.refresh();
+		jokeResponseCache.invalidateAll();
+		jokeLookupCache.invalidateAll();
 	}
 
 	@Test
@@ -56,6 +124,7 @@ class FaJotdApplicationTests {
 	void addJoke_valid() throws Exception {
 		LocalDate now = LocalDate.now();
 		String requestBody = "{ \"joke\": \"Funny Joke\", \"date\": \""+now+"\", \"description\": \"Funny Joke Description\"}";
+		queryCounter.start();
 		this.mvc.perform(post("/joke/add")
 						.contentType(MediaType.APPLICATION_JSON)
 						.content(requestBody)
@@ -66,12 +135,14 @@ class FaJotdApplicationTests {
 				.andExpect(jsonPath("$.joke").value("Funny Joke"))
 				.andExpect(jsonPath("$.date").value(now.toString()))
 				.andExpect(jsonPath("$.description").value("Funny Joke Description"));
+		queryCounter.expect(0, 1, 0, 0);
 	}
 
 	@Test
 	void addJoke_valid_noDescription() throws Exception {
 		LocalDate now = LocalDate.now();
 		String requestBody = "{ \"joke\": \"Funny Joke\", \"date\": \""+now+"\"}";
+		queryCounter.start();
 		this.mvc.perform(post("/joke/add")
 						.contentType(MediaType.APPLICATION_JSON)
 						.content(requestBody)
@@ -82,27 +153,32 @@ class FaJotdApplicationTests {
 				.andExpect(jsonPath("$.joke").value("Funny Joke"))
 				.andExpect(jsonPath("$.date").value(now.toString()))
 				.andExpect(jsonPath("$.description").isEmpty());
+		queryCounter.expect(0, 1, 0, 0);
 	}
 
 	@Test
 	void addJoke_invalid_missingDate() throws Exception {
 		String requestBody = "{ \"joke\": \"Funny Joke\", \"description\": \"Funny Joke Description\"}";
+		queryCounter.start();
 		this.mvc.perform(post("/joke/add")
 						.contentType(MediaType.APPLICATION_JSON)
 						.content(requestBody)
 						.accept(MediaType.APPLICATION_JSON))
 				.andExpect(status().isBadRequest());
+		queryCounter.expect(0, 0, 0, 0);
 	}
 
 	@Test
 	void addJoke_invalid_missingJoke() throws Exception {
 		LocalDate now = LocalDate.now();
 		String requestBody = "{ \"date\": \""+now+"\", \"description\": \"Funny Joke Description\"}";
+		queryCounter.start();
 		this.mvc.perform(post("/joke/add")
 						.contentType(MediaType.APPLICATION_JSON)
 						.content(requestBody)
 						.accept(MediaType.APPLICATION_JSON))
 				.andExpect(status().isBadRequest());
+		queryCounter.expect(0, 0, 0, 0);
 	}
 
 	@Test
@@ -120,11 +196,326 @@ class FaJotdApplicationTests {
 				.andExpect(jsonPath("$.date").value(now.toString()))
 				.andExpect(jsonPath("$.description").value("Funny Joke Description"));
 
+		queryCounter.start();
 		this.mvc.perform(post("/joke/add")
 						.contentType(MediaType.APPLICATION_JSON)
 						.content(requestBody)
 						.accept(MediaType.APPLICATION_JSON))
 				.andExpect(status().is4xxClientError());
+		queryCounter.expect(0, 1, 0, 0);
+	}
+
+	@Test
+	void addJoke_concurrentSameDate_oneWinner() throws Exception {
+		LocalDate now = LocalDate.now();
+		int threads = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Boolean>> results = new ArrayList<>();
+		try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+			for (int i = 0; i < threads; i++) {
+				String text = "Joke " + i;
+				Callable<Boolean> add = () -> {
+					start.await();
+					try {
+						jokeService.addJoke(new Joke(text, now));
+						return true;
+					} catch (JokeExistsForDateException e) {
+						return false;
+					}
+				};
+				results.add(executor.submit(add));
+			}
+			start.countDown();
+
+			int winners = 0;
+			for (Future<Boolean> result : results) {
+				winners += result.get() ? 1 : 0;
+			}
+			assertThat(winners).isEqualTo(1);
+		}
+		assertThat(JdbcTestUtils.countRowsInTable(jdbcTemplate, "joke")).isEqualTo(1);
+	}
+
+	@Test
+	void addJoke_noExistenceQuery() throws Exception {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		jokeService.addJoke(new Joke("Funny Joke", LocalDate.now()));
+
+		assertThat(statistics.getQueryExecutionCount()).isZero();
+		assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+	}
+
+	@Test
+	void addJokes_batch() throws Exception {
+		LocalDate now = LocalDate.now();
+		LocalDate tomorrow = now.plusDays(1);
+		String requestBody = "{ \"joke\": \"Funny Joke\", \"date\": \""+now+"\", \"description\": \"Funny Joke Description\"}";
+		this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody)
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk());
+
+		String batchBody = "[" +
+				"{ \"joke\": \"Existing Date\", \"date\": \""+now+"\"}," +
+				"{ \"joke\": \"New Joke\", \"date\": \""+tomorrow+"\"}," +
+				"{ \"joke\": \"Duplicate Date\", \"date\": \""+tomorrow+"\"}]";
+		queryCounter.start();
+		this.mvc.perform(post("/jokes/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(batchBody)
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].status").value("CONFLICT"))
+				.andExpect(jsonPath("$[1].status").value("INSERTED"))
+				.andExpect(jsonPath("$[1].joke.id").exists())
+				.andExpect(jsonPath("$[2].status").value("CONFLICT"));
+		queryCounter.expect(1, 1, 0, 0);
+
+		this.mvc.perform(get("/joke?date="+tomorrow))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.joke").value("New Joke"));
+	}
+
+	@Test
+	void addJokes_batch_invalidJoke() throws Exception {
+		LocalDate now = LocalDate.now();
+		String batchBody = "[{ \"joke\": \"Funny Joke\", \"date\": \""+now+"\"}, { \"joke\": \"Missing Date\"}]";
+		queryCounter.start();
+		this.mvc.perform(post("/jokes/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(batchBody)
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isBadRequest());
+		queryCounter.expect(0, 0, 0, 0);
+
+		this.mvc.perform(get("/joke?date="+now))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void exportJokes() throws Exception {
+		LocalDate start = LocalDate.now();
+		StringBuilder batchBody = new StringBuilder("[");
+		for (int i = 0; i < 600; i++) {
+			batchBody.append(i == 0 ? "" : ",").append("{ \"joke\": \"Joke ").append(i).append("\", \"date\": \"").append(start.plusDays(i)).append("\"}");
+		}
+		batchBody.append("]");
+		this.mvc.perform(post("/jokes/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(batchBody.toString()))
+				.andExpect(status().isOk());
+
+		MvcResult all = this.mvc.perform(get("/jokes/export"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		// No limit by default, rather than the container's 30s. MockMvc would read that as "do not wait" for the result.
+		assertThat(all.getRequest().getAsyncContext().getTimeout()).isZero();
+		all.getAsyncResult(10_000);
+		String[] allLines = this.mvc.perform(asyncDispatch(all))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+				.andReturn().getResponse().getContentAsString().split("\n");
+		assertThat(allLines.length).isEqualTo(600);
+		assertThat(allLines[599]).contains("\"joke\":\"Joke 599\"");
+
+		MvcResult range = this.mvc.perform(get("/jokes/export?from="+start.plusDays(10)+"&to="+start.plusDays(19)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		range.getAsyncResult(10_000);
+		String[] rangeLines = this.mvc.perform(asyncDispatch(range))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString().split("\n");
+		assertThat(rangeLines.length).isEqualTo(10);
+		assertThat(rangeLines[0]).contains("\"date\":\""+start.plusDays(10)+"\"");
+	}
+
+	@Test
+	void getJokes_keysetPages() throws Exception {
+		LocalDate start = LocalDate.now();
+		StringBuilder batchBody = new StringBuilder("[");
+		for (int i = 0; i < 500; i++) {
+			batchBody.append(i == 0 ? "" : ",").append("{ \"joke\": \"Joke ").append(i).append("\", \"date\": \"").append(start.plusDays(i)).append("\"}");
+		}
+		batchBody.append("]");
+		this.mvc.perform(post("/jokes/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(batchBody.toString()))
+				.andExpect(status().isOk());
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		queryCounter.start();
+		this.mvc.perform(get("/jokes?from="+start+"&to="+start.plusDays(499)+"&limit=10"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.jokes.length()").value(10))
+				.andExpect(jsonPath("$.jokes[0].date").value(start.toString()))
+				.andExpect(jsonPath("$.next").value(start.plusDays(9).toString()));
+		queryCounter.expect(1, 0, 0, 0);
+		assertThat(statistics.getEntityLoadCount()).isLessThanOrEqualTo(11);
+
+		statistics.clear();
+		queryCounter.start();
+		this.mvc.perform(get("/jokes?from="+start+"&to="+start.plusDays(499)+"&limit=10&after="+start.plusDays(489)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.jokes.length()").value(10))
+				.andExpect(jsonPath("$.jokes[0].date").value(start.plusDays(490).toString()))
+				.andExpect(jsonPath("$.next").doesNotExist());
+		queryCounter.expect(1, 0, 0, 0);
+		assertThat(statistics.getEntityLoadCount()).isLessThanOrEqualTo(11);
+	}
+
+	@Test
+	void getJokes_invalidRange() throws Exception {
+		LocalDate now = LocalDate.now();
+		queryCounter.start();
+		this.mvc.perform(get("/jokes?from="+now+"&to="+now.minusDays(1)))
+				.andExpect(status().isBadRequest());
+		queryCounter.expect(0, 0, 0, 0);
+		this.mvc.perform(get("/jokes?from="+now+"&to="+now+"&limit=0"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void getRandomJoke_fromIndex() throws Exception {
+		LocalDate start = LocalDate.now();
+		StringBuilder batchBody = new StringBuilder("[");
+		for (int i = 0; i < 10; i++) {
+			batchBody.append(i == 0 ? "" : ",").append("{ \"joke\": \"Joke ").append(i).append("\", \"date\": \"").append(start.plusDays(i * 2L)).append("\"}");
+		}
+		batchBody.append("]");
+		this.mvc.perform(post("/jokes/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(batchBody.toString()))
+				.andExpect(status().isOk());
+
+		for (int i = 0; i < 20; i++) {
+			this.mvc.perform(get("/joke/random"))
+					.andExpect(status().isOk())
+					.andExpect(header().exists(HttpHeaders.ETAG))
+					.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"))
+					.andExpect(jsonPath("$.joke").value(startsWith("Joke ")));
+		}
+
+		// Once the picked jokes are cached, a draw does not reach the database.
+		for (int i = 0; i < 10; i++) {
+			this.mvc.perform(get("/joke?date="+start.plusDays(i * 2L))).andExpect(status().isOk());
+		}
+		queryCounter.start();
+		for (int i = 0; i < 20; i++) {
+			this.mvc.perform(get("/joke/random?from="+start.plusDays(3)+"&to="+start.plusDays(5)))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.date").value(start.plusDays(4).toString()));
+		}
+		queryCounter.expect(0, 0, 0, 0);
+	}
+
+	@Test
+	void getRandomJoke_NotAvailable() throws Exception {
+		LocalDate now = LocalDate.now();
+		this.mvc.perform(get("/joke/random"))
+				.andExpect(status().isNotFound());
+		this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{ \"joke\": \"Funny Joke\", \"date\": \""+now+"\"}"))
+				.andExpect(status().isOk());
+		this.mvc.perform(get("/joke/random?from="+now.plusDays(1)))
+				.andExpect(status().isNotFound());
+		this.mvc.perform(get("/joke/random?from="+now+"&to="+now.minusDays(1)))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void searchJokes_followsChanges() throws Exception {
+		LocalDate now = LocalDate.now();
+		String batchBody = "[{ \"joke\": \"Why did the chicken cross the road?\", \"date\": \""+now+"\"},"
+				+ "{ \"joke\": \"A chicken walks into a library\", \"date\": \""+now.plusDays(1)+"\", \"description\": \"Book, book, book\"},"
+				+ "{ \"joke\": \"Knock knock\", \"date\": \""+now.plusDays(2)+"\"}]";
+		this.mvc.perform(post("/jokes/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(batchBody))
+				.andExpect(status().isOk());
+
+		// Served from the index and the lookup cache the batch filled.
+		queryCounter.start();
+		this.mvc.perform(get("/jokes/search?q=chicken"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2));
+		this.mvc.perform(get("/jokes/search?q=Chick libr"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].date").value(now.plusDays(1).toString()));
+		this.mvc.perform(get("/jokes/search?q=book"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].joke").value("A chicken walks into a library"));
+		queryCounter.expect(0, 0, 0, 0);
+
+		this.mvc.perform(delete("/jokes?from="+now+"&to="+now))
+				.andExpect(status().isOk());
+		this.mvc.perform(get("/jokes/search?q=chicken&limit=5"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].date").value(now.plusDays(1).toString()));
+	}
+
+	@Test
+	void getJokesById_onlyMissesReachTheDatabase() throws Exception {
+		LocalDate now = LocalDate.now();
+		Joke first = jokeService.addJoke(new Joke("First Joke", now));
+		Joke second = jokeService.addJoke(new Joke("Second Joke", now.plusDays(1)));
+		Joke third = jokeService.addJoke(new Joke("Third Joke", now.plusDays(2)));
+		jokeLookupCache.invalidateAll();
+		jokeService.getJokeById(first.getId());
+
+		// The cached id is served as is, the other three share one query.
+		String ids = third.getId() + ",999," + first.getId() + "," + second.getId();
+		queryCounter.start();
+		this.mvc.perform(get("/jokes?ids=" + ids))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(4))
+				.andExpect(jsonPath("$[0].status").value("FOUND"))
+				.andExpect(jsonPath("$[0].joke.joke").value("Third Joke"))
+				.andExpect(jsonPath("$[1].id").value(999))
+				.andExpect(jsonPath("$[1].status").value("NOT_FOUND"))
+				.andExpect(jsonPath("$[2].joke.joke").value("First Joke"))
+				.andExpect(jsonPath("$[3].joke.joke").value("Second Joke"));
+		queryCounter.expect(1, 0, 0, 0);
+
+		queryCounter.start();
+		this.mvc.perform(post("/jokes/lookup")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("[" + ids + "]"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[1].status").value("NOT_FOUND"))
+				.andExpect(jsonPath("$[3].joke.joke").value("Second Joke"));
+		queryCounter.expect(0, 0, 0, 0);
+	}
+
+	@Test
+	void getJokesById_invalid() throws Exception {
+		this.mvc.perform(get("/jokes?ids="))
+				.andExpect(status().isBadRequest());
+		this.mvc.perform(get("/jokes?ids=1,two"))
+				.andExpect(status().isBadRequest());
+		this.mvc.perform(post("/jokes/lookup")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("[]"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void searchJokes_invalid() throws Exception {
+		this.mvc.perform(get("/jokes/search"))
+				.andExpect(status().isBadRequest());
+		this.mvc.perform(get("/jokes/search?q=chicken&limit=0"))
+				.andExpect(status().isBadRequest());
+		this.mvc.perform(get("/jokes/search?q=%20"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(0));
 	}
 
 	@Test
@@ -142,18 +533,109 @@ class FaJotdApplicationTests {
 				.andExpect(jsonPath("$.date").value(now.toString()))
 				.andExpect(jsonPath("$.description").value("Funny Joke Description"));
 
+		queryCounter.start();
 		this.mvc.perform(get("/joke"))
 				.andExpect(status().isOk())
 				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
 				.andExpect(jsonPath("$.joke").value("Funny Joke"))
 				.andExpect(jsonPath("$.date").value(now.toString()))
 				.andExpect(jsonPath("$.description").value("Funny Joke Description"));
+		queryCounter.expect(0, 0, 0, 0);
+	}
+
+	@Test
+	void getTodaysJoke_MovedToTomorrow() throws Exception {
+		LocalDate now = LocalDate.now();
+		LocalDate tomorrow = now.plusDays(1);
+		String requestBody = "{ \"joke\": \"Funny Joke\", \"date\": \""+now+"\", \"description\": \"Funny Joke Description\"}";
+		MvcResult result = this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody)
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk()).andReturn();
+
+		this.mvc.perform(get("/joke"))
+				.andExpect(status().isOk());
+
+		ObjectMapper mapper = JsonMapper.builder()
+				.findAndAddModules()
+				.build();
+
+		Joke savedJoke = mapper.readValue(result.getResponse().getContentAsString(), Joke.class);
+		String updateRB = "{ \"id\": "+savedJoke.getId()+", \"version\": "+savedJoke.getVersion()+", \"joke\": \"Funny Joke\", \"date\": \""+tomorrow+"\", \"description\": \"Funny Joke Description\"}";
+		this.mvc.perform(put("/joke/update")
+						.contentType(MediaType.APPLICATION_JSON)
+						.accept(MediaType.APPLICATION_JSON)
+						.content(updateRB))
+				.andExpect(status().isOk());
+
+		this.mvc.perform(get("/joke"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void getTodaysJoke_NotModified() throws Exception {
+		LocalDate now = LocalDate.now();
+		String requestBody = "{ \"joke\": \"Funny Joke\", \"date\": \""+now+"\", \"description\": \"Funny Joke Description\"}";
+		this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody)
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk());
+
+		MvcResult result = this.mvc.perform(get("/joke"))
+				.andExpect(status().isOk())
+				.andExpect(header().exists(HttpHeaders.ETAG))
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, startsWith("max-age=")))
+				.andReturn();
+
+		String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+		this.mvc.perform(get("/joke").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, etag));
+
+		this.mvc.perform(get("/joke").header(HttpHeaders.IF_NONE_MATCH, "\"stale\""))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.joke").value("Funny Joke"));
+	}
+
+	@Test
+	void getTodaysJoke_Gzip() throws Exception {
+		LocalDate now = LocalDate.now();
+		String requestBody = "{ \"joke\": \"Funny Joke\", \"date\": \""+now+"\", \"description\": \"Funny Joke Description\"}";
+		this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody)
+						.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk());
+
+		MvcResult result = this.mvc.perform(get("/joke").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+				.andReturn();
+
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+			String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			assertThat(json).contains("\"joke\":\"Funny Joke\"");
+		}
+	}
+
+	@Test
+	void getTodaysJoke_GzipRefused() throws Exception {
+		jokeService.addJoke(new Joke("Funny Joke", LocalDate.now()));
+
+		this.mvc.perform(get("/joke").header(HttpHeaders.ACCEPT_ENCODING, "identity, gzip;q=0"))
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andExpect(jsonPath("$.joke").value("Funny Joke"));
 	}
 
 	@Test
 	void getTodaysJoke_NotAvailable() throws Exception {
+		queryCounter.start();
 		this.mvc.perform(get("/joke"))
 				.andExpect(status().isNotFound());
+		queryCounter.expect(0, 0, 0, 0);
 	}
 
 	@Test
@@ -171,19 +653,23 @@ class FaJotdApplicationTests {
 				.andExpect(jsonPath("$.date").value(now.toString()))
 				.andExpect(jsonPath("$.description").value("Funny Joke Description"));
 
+		queryCounter.start();
 		this.mvc.perform(get("/joke?date="+now))
 				.andExpect(status().isOk())
 				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
 				.andExpect(jsonPath("$.joke").value("Funny Joke"))
 				.andExpect(jsonPath("$.date").value(now.toString()))
 				.andExpect(jsonPath("$.description").value("Funny Joke Description"));
+		queryCounter.expect(0, 0, 0, 0);
 	}
 
 	@Test
 	void getYesterdayJoke_NotAvailable() throws Exception {
 		LocalDate now = LocalDate.now().minusDays(-1);
+		queryCounter.start();
 		this.mvc.perform(get("/joke?date="+now))
 				.andExpect(status().isNotFound());
+		queryCounter.expect(1, 0, 0, 0);
 	}
 
 	@Test
@@ -202,6 +688,7 @@ class FaJotdApplicationTests {
 
 		Joke savedJoke = mapper.readValue(result.getResponse().getContentAsString(), Joke.class);
 
+		queryCounter.start();
 		this.mvc.perform(get("/joke?id="+savedJoke.getId()))
 				.andExpect(status().isOk())
 				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
@@ -209,13 +696,68 @@ class FaJotdApplicationTests {
 				.andExpect(jsonPath("$.joke").value("Funny Joke"))
 				.andExpect(jsonPath("$.date").value(now.toString()))
 				.andExpect(jsonPath("$.description").value("Funny Joke Description"));
+		queryCounter.expect(0, 0, 0, 0);
 
 	}
 
+	@Test
+	void getCacheStats() throws Exception {
+		CacheStats before = jokeLookupCache.caches().get("jokes.lookup.id").stats();
+		this.mvc.perform(get("/joke?id=13"))
+				.andExpect(status().isNotFound());
+		this.mvc.perform(get("/joke?id=13"))
+				.andExpect(status().isNotFound());
+
+		this.mvc.perform(get("/cache/stats"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$['jokes.lookup.id'].misses").value(before.missCount() + 1))
+				.andExpect(jsonPath("$['jokes.lookup.id'].hits").value(before.hitCount() + 1))
+				.andExpect(jsonPath("$['jokes.lookup.id'].evictions").value(before.evictionCount()));
+	}
+
+	@Test
+	void statementsPerRequest_recorded() throws Exception {
+		DistributionSummary before = meterRegistry.summary("jotd.http.jdbc.statements", "method", "GET", "uri", "/joke");
+		long count = before.count();
+		double total = before.totalAmount();
+
+		this.mvc.perform(get("/joke?id=987654"))
+				.andExpect(status().isNotFound());
+		this.mvc.perform(get("/joke?id=987654"))
+				.andExpect(status().isNotFound());
+
+		// The first lookup queries the database; the second is answered by the lookup cache.
+		DistributionSummary after = meterRegistry.summary("jotd.http.jdbc.statements", "method", "GET", "uri", "/joke");
+		assertThat(after.count() - count).isEqualTo(2);
+		assertThat(after.totalAmount() - total).isEqualTo(1.0);
+	}
+
+	@Test
+	void prometheus_scrapeHasTimersAndCacheMetrics() throws Exception {
+		LocalDate now = LocalDate.now();
+		jokeService.addJoke(new Joke("Funny Joke", now));
+		this.mvc.perform(get("/joke?date="+now))
+				.andExpect(status().isOk());
+
+		// The management server is not started in a mock web environment, so scrape the registry directly.
+		String scrape = prometheusMeterRegistry.scrape();
+		assertThat(scrape).contains("http_server_requests_seconds_bucket{");
+		assertThat(scrape).contains("uri=\"/joke\"");
+		assertThat(scrape).contains("jotd_service_seconds_bucket{");
+		assertThat(scrape).contains("method=\"getJokeByDate\"");
+		assertThat(scrape).contains("jotd_http_jdbc_statements_count{");
+		assertThat(scrape).contains("cache_gets_total{cache=\"jokes.lookup.date\"");
+		assertThat(scrape).contains("jotd_cache_coalesced_total{cache=\"jokes.lookup.date\"");
+		assertThat(scrape).contains("jotd_bulkhead_wait_seconds_bucket{bulkhead=\"read\"");
+		assertThat(scrape).contains("jotd_bulkhead_rejected_total{bulkhead=\"admin\"");
+	}
+
 	@Test
 	void getJokeById_NotFound() throws Exception {
+		queryCounter.start();
 		this.mvc.perform(get("/joke?id=13"))
 				.andExpect(status().isNotFound());
+		queryCounter.expect(1, 0, 0, 0);
 	}
 
 	@Test
@@ -234,47 +776,118 @@ class FaJotdApplicationTests {
 
 		Joke savedJoke = mapper.readValue(result.getResponse().getContentAsString(), Joke.class);
 
+		queryCounter.start();
 		this.mvc.perform(delete("/joke/delete/"+savedJoke.getId()))
-				.andExpect(status().isOk());
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.deleted").value(1));
+		// On H2 the DELETE runs inside a select from its delta table, which hands back the deleted dates.
+		queryCounter.expect(1, 0, 0, 0);
 
+		this.mvc.perform(get("/joke?id="+savedJoke.getId()))
+				.andExpect(status().isNotFound());
 	}
 
 	@Test
 	void deleteJoke_NotFound() throws Exception {
+		queryCounter.start();
 		this.mvc.perform(delete("/joke/delete/13"))
+				.andExpect(status().isNotFound());
+		queryCounter.expect(1, 0, 0, 0);
+	}
+
+	@Test
+	void deleteJokes_byRange_oneStatement() throws Exception {
+		LocalDate start = LocalDate.now();
+		List<Joke> jokes = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			jokes.add(new Joke("Joke " + i, start.plusDays(i)));
+		}
+		jokeService.addJokes(jokes);
+		this.mvc.perform(get("/joke"))
 				.andExpect(status().isOk());
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		this.mvc.perform(delete("/jokes?from="+start+"&to="+start.plusDays(999)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.deleted").value(1000));
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+		this.mvc.perform(get("/joke"))
+				.andExpect(status().isNotFound());
+		this.mvc.perform(delete("/jokes?from="+start+"&to="+start.plusDays(999)))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void deleteJokes_byIds_oneStatement() throws Exception {
+		LocalDate start = LocalDate.now();
+		List<Joke> jokes = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			jokes.add(new Joke("Joke " + i, start.plusDays(i)));
+		}
+		jokeService.addJokes(jokes);
+		String ids = String.join(",", jokes.stream().map(joke -> joke.getId().toString()).toList());
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		this.mvc.perform(delete("/jokes?ids="+ids))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.deleted").value(1000));
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(JdbcTestUtils.countRowsInTable(jdbcTemplate, "joke")).isZero();
 	}
 
 	@Test
 	void updateJoke_NullObject() throws Exception {
+		queryCounter.start();
 		this.mvc.perform(put("/joke/update")
 		.contentType(MediaType.APPLICATION_JSON)
 				.accept(MediaType.APPLICATION_JSON))
 				.andExpect(status().isBadRequest());
+		queryCounter.expect(0, 0, 0, 0);
 	}
 
 	@Test
 	void updateJoke_NullId() throws Exception {
 		LocalDate now = LocalDate.now();
 		String requestBody = "{ \"joke\": \"Funny Joke\", \"date\": \""+now+"\", \"description\": \"Funny Joke Description\"}";
+		queryCounter.start();
+		this.mvc.perform(put("/joke/update")
+						.contentType(MediaType.APPLICATION_JSON)
+						.accept(MediaType.APPLICATION_JSON)
+						.content(requestBody)
+				)
+				.andExpect(status().isBadRequest());
+		queryCounter.expect(0, 0, 0, 0);
+	}
+
+	@Test
+	void updateJoke_NullVersion() throws Exception {
+		Joke savedJoke = jokeService.addJoke(new Joke("Funny Joke", LocalDate.now()));
+		String requestBody = "{ \"id\": "+savedJoke.getId()+", \"joke\": \"Funnier Joke\", \"date\": \""+savedJoke.getDate()+"\"}";
+		queryCounter.start();
 		this.mvc.perform(put("/joke/update")
 						.contentType(MediaType.APPLICATION_JSON)
 						.accept(MediaType.APPLICATION_JSON)
 						.content(requestBody)
 				)
 				.andExpect(status().isBadRequest());
+		queryCounter.expect(0, 0, 0, 0);
 	}
 
 	@Test
 	void updateJoke_JokeNotFound() throws Exception {
 		LocalDate now = LocalDate.now();
-		String requestBody = "{ \"id\": 12, \"joke\": \"Funny Joke\", \"date\": \""+now+"\", \"description\": \"Funny Joke Description\"}";
+		String requestBody = "{ \"id\": 12, \"version\": 0, \"joke\": \"Funny Joke\", \"date\": \""+now+"\", \"description\": \"Funny Joke Description\"}";
+		queryCounter.start();
 		this.mvc.perform(put("/joke/update")
 						.contentType(MediaType.APPLICATION_JSON)
 						.accept(MediaType.APPLICATION_JSON)
 						.content(requestBody)
 				)
 				.andExpect(status().isNotFound());
+		queryCounter.expect(1, 0, 0, 0);
 
 	}
 
@@ -302,13 +915,57 @@ class FaJotdApplicationTests {
 
 		Joke savedJoke = mapper.readValue(result.getResponse().getContentAsString(), Joke.class);
 
-		String updateRB = "{ \"id\": "+savedJoke.getId()+", \"joke\": \"Funny Joke\", \"date\": \""+tomorrow+"\", \"description\": \"Funny Joke Description\"}";
+		String updateRB = "{ \"id\": "+savedJoke.getId()+", \"version\": "+savedJoke.getVersion()+", \"joke\": \"Funny Joke\", \"date\": \""+tomorrow+"\", \"description\": \"Funny Joke Description\"}";
+		queryCounter.start();
+		this.mvc.perform(put("/joke/update")
+						.contentType(MediaType.APPLICATION_JSON)
+						.accept(MediaType.APPLICATION_JSON)
+						.content(updateRB)
+				)
+				.andExpect(status().isConflict());
+		queryCounter.expect(1, 0, 1, 0);
+	}
+
+	@Test
+	void updateJoke_StaleVersion() throws Exception {
+		LocalDate now = LocalDate.now();
+		Joke savedJoke = jokeService.addJoke(new Joke("Funny Joke", now));
+		savedJoke.setJoke("Concurrent Edit");
+		jokeService.updateJoke(savedJoke);
+
+		String updateRB = "{ \"id\": "+savedJoke.getId()+", \"version\": 0, \"joke\": \"Funnier Joke\", \"date\": \""+now+"\"}";
 		this.mvc.perform(put("/joke/update")
 						.contentType(MediaType.APPLICATION_JSON)
 						.accept(MediaType.APPLICATION_JSON)
 						.content(updateRB)
 				)
 				.andExpect(status().isConflict());
+
+		String currentRB = "{ \"id\": "+savedJoke.getId()+", \"version\": 1, \"joke\": \"Funnier Joke\", \"date\": \""+now+"\"}";
+		this.mvc.perform(put("/joke/update")
+						.contentType(MediaType.APPLICATION_JSON)
+						.accept(MediaType.APPLICATION_JSON)
+						.content(currentRB)
+				)
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.version").value(2));
+	}
+
+	@Test
+	void updateJoke_OneSelectOneUpdate() throws Exception {
+		LocalDate now = LocalDate.now();
+		Joke savedJoke = jokeService.addJoke(new Joke("Funny Joke", now));
+		Joke update = new Joke("Funnier Joke", now.plusDays(1));
+		update.setId(savedJoke.getId());
+		update.setVersion(savedJoke.getVersion());
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		jokeService.updateJoke(update);
+
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+		assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+		assertThat(statistics.getEntityUpdateCount()).isEqualTo(1);
 	}
 
 	@Test
@@ -327,7 +984,8 @@ class FaJotdApplicationTests {
 				.build();
 
 		Joke savedJoke = mapper.readValue(result.getResponse().getContentAsString(), Joke.class);
-		String updateRB = "{ \"id\": "+savedJoke.getId()+", \"joke\": \"Funnier Joke\", \"date\": \""+tomorrow+"\", \"description\": \"Funnier Joke Description\"}";
+		String updateRB = "{ \"id\": "+savedJoke.getId()+", \"version\": "+savedJoke.getVersion()+", \"joke\": \"Funnier Joke\", \"date\": \""+tomorrow+"\", \"description\": \"Funnier Joke Description\"}";
+		queryCounter.start();
 		this.mvc.perform(put("/joke/update")
 						.contentType(MediaType.APPLICATION_JSON)
 						.accept(MediaType.APPLICATION_JSON)
@@ -339,6 +997,7 @@ class FaJotdApplicationTests {
 				.andExpect(jsonPath("$.joke").value("Funnier Joke"))
 				.andExpect(jsonPath("$.date").value(tomorrow.toString()))
 				.andExpect(jsonPath("$.description").value("Funnier Joke Description"));
+		queryCounter.expect(1, 0, 1, 0);
 
 	}
 
@@ -0,0 +1,89 @@
+package jtomsett.fa_jotd;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.repository.InMemoryJokeRepository;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The "memory" profile swaps the JPA repository for {@link InMemoryJokeRepository} under the same
+ * service and controller.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:memory-storage")
+@ActiveProfiles("memory")
+@AutoConfigureMockMvc
+class InMemoryStorageTests {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private JokeRepository jokeRepository;
+
+	@Test
+	void memoryProfile_usesInMemoryRepository() {
+		assertThat(jokeRepository).isInstanceOf(InMemoryJokeRepository.class);
+		// A transactional proxy would open a JPA transaction around every read.
+		assertThat(AopUtils.isAopProxy(jokeRepository)).isFalse();
+	}
+
+	@Test
+	void addUpdateAndGet() throws Exception {
+		LocalDate date = LocalDate.of(2020, 1, 1);
+		this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{ \"joke\": \"Memory Joke\", \"date\": \""+date+"\"}"))
+				.andExpect(status().isOk());
+		Joke added = jokeRepository.findByDate(date).orElseThrow();
+		long id = added.getId();
+
+		this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{ \"joke\": \"Clash\", \"date\": \""+date+"\"}"))
+				.andExpect(status().isConflict());
+
+		this.mvc.perform(put("/joke/update")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{ \"id\": "+id+", \"version\": "+added.getVersion()+", \"joke\": \"Updated Joke\", \"date\": \""+date.plusDays(1)+"\"}"))
+				.andExpect(status().isOk());
+
+		this.mvc.perform(get("/joke?id="+id))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.joke").value("Updated Joke"));
+		this.mvc.perform(get("/joke?date="+date.plusDays(1)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.joke").value("Updated Joke"));
+		this.mvc.perform(get("/joke?date="+date))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void addBeyondDateSpan_isBadRequest() throws Exception {
+		LocalDate date = LocalDate.of(2021, 1, 1);
+		this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{ \"joke\": \"Near Joke\", \"date\": \""+date+"\"}"))
+				.andExpect(status().isOk());
+
+		LocalDate far = date.plusDays(InMemoryJokeRepository.MAX_SPAN_DAYS);
+		this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{ \"joke\": \"Far Joke\", \"date\": \""+far+"\"}"))
+				.andExpect(status().isBadRequest());
+		assertThat(jokeRepository.findByDate(far)).isEmpty();
+	}
+}
@@ -0,0 +1,70 @@
+package jtomsett.fa_jotd;
+
+import jtomsett.fa_jotd.repository.InMemoryJokeRepository;
+import jtomsett.fa_jotd.repository.JokeJournal;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The "journal" profile keeps jokes in an {@link InMemoryJokeRepository} that writes through a {@link JokeJournal}.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:journal-storage")
+@ActiveProfiles("journal")
+@AutoConfigureMockMvc
+class JournalStorageTests {
+
+	@TempDir
+	static Path directory;
+
+	@DynamicPropertySource
+	static void journalProperties(DynamicPropertyRegistry registry) {
+		registry.add("jotd.journal.directory", () -> directory.toString());
+	}
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private JokeRepository jokeRepository;
+
+	@Test
+	void addJoke_isReplayedFromJournal() throws Exception {
+		assertThat(jokeRepository).isInstanceOf(InMemoryJokeRepository.class);
+
+		LocalDate date = LocalDate.of(2020, 1, 1);
+		this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{ \"joke\": \"Journal Joke\", \"date\": \""+date+"\"}"))
+				.andExpect(status().isOk());
+
+		// Replay a copy of the files, since the application keeps the journal itself open.
+		Path copy = Files.createDirectories(directory.resolve("copy"));
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.filter(Files::isRegularFile).toList()) {
+				Files.copy(file, copy.resolve(file.getFileName()));
+			}
+		}
+		JokeJournal journal = new JokeJournal(copy, JokeJournal.Fsync.NEVER, 4096);
+		InMemoryJokeRepository replayed = new InMemoryJokeRepository(journal);
+		journal.close();
+		assertThat(replayed.findByDate(date).orElseThrow().getJoke()).isEqualTo("Journal Joke");
+	}
+}
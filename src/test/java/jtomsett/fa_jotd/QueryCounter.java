@@ -0,0 +1,42 @@
+package jtomsett.fa_jotd;
+
+import jtomsett.fa_jotd.repository.StatementCounter;
+import jtomsett.fa_jotd.repository.StatementCounter.Statements;
+import jtomsett.fa_jotd.repository.StatementCounter.Type;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the SQL statements run on the test thread between {@link #start()} and {@link #expect}, so a
+ * test can pin the query budget of a request. Statements made by other threads are not counted.
+ */
+final class QueryCounter {
+
+    private final StatementCounter statementCounter;
+    private Statements statements;
+
+    QueryCounter(StatementCounter statementCounter) {
+        this.statementCounter = statementCounter;
+    }
+
+    void start() {
+        statements = statementCounter.start();
+    }
+
+    Statements stop() {
+        return statementCounter.stop(statements);
+    }
+
+    /**
+     * Stops counting and asserts the exact number of SELECTs, INSERTs, UPDATEs and DELETEs. Sequence
+     * fetches depend on where the id allocation block happens to be, so they are not budgeted.
+     */
+    Statements expect(int selects, int inserts, int updates, int deletes) {
+        Statements counted = stop();
+        assertThat(counted.count(Type.SELECT)).as("SELECTs in %s", counted).isEqualTo(selects);
+        assertThat(counted.count(Type.INSERT)).as("INSERTs in %s", counted).isEqualTo(inserts);
+        assertThat(counted.count(Type.UPDATE)).as("UPDATEs in %s", counted).isEqualTo(updates);
+        assertThat(counted.count(Type.DELETE)).as("DELETEs in %s", counted).isEqualTo(deletes);
+        return counted;
+    }
+}
@@ -0,0 +1,112 @@
+package jtomsett.fa_jotd;
+
+import jtomsett.fa_jotd.controller.JokeResponseCache;
+import jtomsett.fa_jotd.service.JokeLookupCache;
+import jtomsett.fa_jotd.service.TodaysJokeHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two H2 databases stand in for the primary and the replica. Nothing copies rows between them, so
+ * a row only found in one of them shows where a request was routed.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:primary",
+		"jotd.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1;INIT=CREATE TABLE IF NOT EXISTS joke"
+				+ "(id BIGINT PRIMARY KEY, date DATE UNIQUE, description VARCHAR(255), joke VARCHAR(255), version BIGINT)",
+		"jotd.replica.username=sa",
+		"jotd.replica.read-your-writes=0s"})
+@AutoConfigureMockMvc
+class ReadReplicaRoutingTests {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	@Qualifier("primaryDataSource")
+	private DataSource primaryDataSource;
+
+	@Autowired
+	@Qualifier("replicaDataSource")
+	private DataSource replicaDataSource;
+
+	@Autowired
+	private TodaysJokeHolder todaysJokeHolder;
+
+	@Autowired
+	private JokeResponseCache jokeResponseCache;
+
+	@Autowired
+	private JokeLookupCache jokeLookupCache;
+
+	private JdbcTemplate primary;
+	private JdbcTemplate replica;
+
+	@BeforeEach
+	void beforeEach() {
+		primary = new JdbcTemplate(primaryDataSource);
+		replica = new JdbcTemplate(replicaDataSource);
+	}
+
+	@AfterEach
+	void afterEach() {
+		JdbcTestUtils.deleteFromTables(primary, "joke");
+		JdbcTestUtils.deleteFromTables(replica, "joke");
+		todaysJokeHolder.refresh();
+		jokeResponseCache.invalidateAll();
+		jokeLookupCache.invalidateAll();
+	}
+
+	@Test
+	void getJokeByDate_readsReplica() throws Exception {
+		LocalDate date = LocalDate.of(2020, 1, 1);
+		replica.update("insert into joke (id, date, joke, version) values (?, ?, ?, 0)", 1L, date, "Replica Joke");
+
+		this.mvc.perform(get("/joke?date="+date))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.joke").value("Replica Joke"));
+		this.mvc.perform(get("/joke?id=1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.joke").value("Replica Joke"));
+	}
+
+	@Test
+	void getJokes_readsReplica() throws Exception {
+		LocalDate date = LocalDate.of(2020, 1, 1);
+		replica.update("insert into joke (id, date, joke, version) values (?, ?, ?, 0)", 1L, date, "Replica Joke");
+
+		this.mvc.perform(get("/jokes?from="+date+"&to="+date.plusDays(30)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.jokes[0].joke").value("Replica Joke"));
+	}
+
+	@Test
+	void addJoke_writesPrimary() throws Exception {
+		LocalDate date = LocalDate.of(2020, 1, 1);
+		this.mvc.perform(post("/joke/add")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{ \"joke\": \"Primary Joke\", \"date\": \""+date+"\"}"))
+				.andExpect(status().isOk());
+
+		assertThat(JdbcTestUtils.countRowsInTable(primary, "joke")).isEqualTo(1);
+		assertThat(JdbcTestUtils.countRowsInTable(replica, "joke")).isEqualTo(0);
+	}
+}
@@ -0,0 +1,60 @@
+package jtomsett.fa_jotd.benchmark;
+
+import jtomsett.fa_jotd.FaJotdApplication;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.service.JokeService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rows per second for seeding jokes one {@code addJoke} at a time versus one {@code addJokes} batch.
+ * <p>
+ * {@code mvn test -Pbenchmark -Dtest=BatchImportBenchmark -Djotd.benchmark.rows=10000}
+ */
+@Tag("benchmark")
+class BatchImportBenchmark {
+
+    private static final int ROWS = Integer.getInteger("jotd.benchmark.rows", 5000);
+
+    @Test
+    void perJokeVersusBatch() {
+        double perJoke = run("per-joke", false);
+        double batch = run("batch", true);
+
+        System.out.println("Importing " + ROWS + " jokes");
+        System.out.printf("%-24s %.0f rows/s%n", "addJoke per row", perJoke);
+        System.out.printf("%-24s %.0f rows/s%n", "addJokes batch", batch);
+    }
+
+    private static double run(String name, boolean batch) {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FaJotdApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark-" + name)) {
+            JokeService jokeService = context.getBean(JokeService.class);
+            List<Joke> jokes = jokes(LocalDate.of(2000, 1, 1));
+
+            long start = System.nanoTime();
+            if (batch) {
+                jokeService.addJokes(jokes);
+            } else {
+                jokes.forEach(jokeService::addJoke);
+            }
+            return ROWS / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private static List<Joke> jokes(LocalDate start) {
+        List<Joke> jokes = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            jokes.add(new Joke("Joke " + i, start.plusDays(i)));
+        }
+        return jokes;
+    }
+}
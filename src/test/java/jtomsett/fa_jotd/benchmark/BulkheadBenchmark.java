@@ -0,0 +1,101 @@
+package jtomsett.fa_jotd.benchmark;
+
+import jtomsett.fa_jotd.FaJotdApplication;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.BatchImportResult;
+import jtomsett.fa_jotd.service.JokeService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read p99 on its own and during a burst of admin batch imports, with the bulkheads on and off.
+ * Caches are off so every read needs a database connection, which is what the imports compete for.
+ * <p>
+ * {@code mvn test -Pbenchmark -Dtest=BulkheadBenchmark -Djotd.benchmark.admin-concurrency=50}
+ */
+@Tag("benchmark")
+class BulkheadBenchmark {
+
+    private static final int READ_CONCURRENCY = Integer.getInteger("jotd.benchmark.concurrency", 100);
+    private static final int ADMIN_CONCURRENCY = Integer.getInteger("jotd.benchmark.admin-concurrency", 50);
+    private static final int BATCH_SIZE = Integer.getInteger("jotd.benchmark.batch-size", 500);
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("jotd.benchmark.warmup-seconds", 5));
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("jotd.benchmark.duration-seconds", 15));
+    private static final int DAYS = 365;
+
+    @Test
+    void readsDuringAdminBurst() throws Exception {
+        List<String> lines = new ArrayList<>();
+        lines.addAll(run("no bulkhead", false));
+        lines.addAll(run("bulkhead", true));
+
+        System.out.println("Reads with " + READ_CONCURRENCY + " clients, admin burst of " + ADMIN_CONCURRENCY
+                + " clients importing " + BATCH_SIZE + " jokes per request, caches off");
+        lines.forEach(System.out::println);
+    }
+
+    private static List<String> run(String name, boolean bulkhead) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FaJotdApplication.class)
+                .run("--server.port=0", "--spring.datasource.url=jdbc:h2:mem:benchmark-bulkhead-" + bulkhead,
+                        "--jotd.bulkhead.enabled=" + bulkhead, "--jotd.lookup-cache.max-size=0", "--jotd.response-cache.max-size=0")) {
+            List<Long> ids = seed(context.getBean(JokeService.class));
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            List<LoadDriver.Operation> reads = List.of(new LoadDriver.Operation("read", 1, () -> HttpRequest.newBuilder(
+                    URI.create(base + "/joke?id=" + ids.get(ThreadLocalRandom.current().nextInt(ids.size())))).GET().build()));
+
+            LoadDriver.Result alone = LoadDriver.run(READ_CONCURRENCY, WARMUP, DURATION, reads).get("read");
+
+            // Both loops share the warmup, so the burst is under way when reads start being measured.
+            AtomicInteger batches = new AtomicInteger();
+            CompletableFuture<LoadDriver.Result> burst = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return LoadDriver.run(ADMIN_CONCURRENCY, WARMUP, DURATION, () -> batch(base, batches.incrementAndGet()));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            LoadDriver.Result during = LoadDriver.run(READ_CONCURRENCY, WARMUP, DURATION, reads).get("read");
+            LoadDriver.Result admin = burst.join();
+
+            return List.of(
+                    alone.summary(name + ", reads alone"),
+                    during.summary(name + ", reads in burst"),
+                    admin.summary(name + ", admin burst"));
+        }
+    }
+
+    // Each batch lands on its own run of dates after the seeded year.
+    private static HttpRequest batch(String base, int batch) {
+        LocalDate start = LocalDate.now().plusDays(DAYS + (long) batch * BATCH_SIZE);
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"joke\":\"Imported joke ").append(i)
+                    .append("\",\"date\":\"").append(start.plusDays(i)).append("\"}");
+        }
+        return HttpRequest.newBuilder(URI.create(base + "/jokes/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.append(']').toString()))
+                .build();
+    }
+
+    private static List<Long> seed(JokeService jokeService) {
+        LocalDate start = LocalDate.now().minusDays(DAYS);
+        List<Joke> jokes = new ArrayList<>(DAYS);
+        for (int i = 0; i < DAYS; i++) {
+            jokes.add(new Joke("Joke " + i, start.plusDays(i)));
+        }
+        return jokeService.addJokes(jokes).stream().map(BatchImportResult::joke).map(Joke::getId).toList();
+    }
+}
@@ -0,0 +1,91 @@
+package jtomsett.fa_jotd.benchmark;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.repository.InMemoryJokeRepository;
+import jtomsett.fa_jotd.repository.JokeJournal;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Write throughput of {@code jotd.storage=journal} under each fsync policy, and recovery time from the
+ * resulting journal and from a snapshot. Files go to {@code target/benchmark/journal}, so results depend on
+ * the disk under {@code target}.
+ * <p>
+ * {@code mvn test -Pbenchmark -Dtest=JournalBenchmark -Djotd.benchmark.entries=100000}
+ */
+@Tag("benchmark")
+class JournalBenchmark {
+
+    private static final int ENTRIES = Integer.getInteger("jotd.benchmark.entries", 100_000);
+    // One disk flush per write; keep the run short and report the rate.
+    private static final int ALWAYS_ENTRIES = Integer.getInteger("jotd.benchmark.always-entries", 5_000);
+    private static final Path DIRECTORY = Path.of("target", "benchmark", "journal");
+    private static final LocalDate START = LocalDate.of(2000, 1, 1);
+
+    @Test
+    void writeAndRecover() throws IOException {
+        System.out.println("Journal with " + ENTRIES + " entries");
+        write(JokeJournal.Fsync.ALWAYS, ALWAYS_ENTRIES);
+        write(JokeJournal.Fsync.NEVER, ENTRIES);
+        write(JokeJournal.Fsync.INTERVAL, ENTRIES);
+
+        // The INTERVAL run left ENTRIES adds plus ENTRIES / 2 updates in the journal.
+        Path directory = DIRECTORY.resolve("interval");
+        recover(directory, "recover from journal", ENTRIES);
+        try (JokeJournal journal = journal(directory, JokeJournal.Fsync.NEVER)) {
+            InMemoryJokeRepository repository = new InMemoryJokeRepository(journal);
+            long start = System.nanoTime();
+            repository.compact();
+            System.out.printf("%-24s %8.1f ms%n", "snapshot", (System.nanoTime() - start) / 1e6);
+        }
+        recover(directory, "recover from snapshot", ENTRIES);
+    }
+
+    private static void write(JokeJournal.Fsync fsync, int entries) throws IOException {
+        Path directory = DIRECTORY.resolve(fsync.name().toLowerCase());
+        FileSystemUtils.deleteRecursively(directory);
+        Files.createDirectories(directory);
+
+        int writes = entries + entries / 2;
+        double seconds;
+        try (JokeJournal journal = journal(directory, fsync)) {
+            InMemoryJokeRepository repository = new InMemoryJokeRepository(journal);
+            long start = System.nanoTime();
+            for (int i = 0; i < entries; i++) {
+                repository.save(new Joke("Joke " + i, START.plusDays(i)));
+            }
+            for (long id = 1; id <= entries / 2; id++) {
+                Joke joke = repository.findById(id).orElseThrow();
+                joke.setJoke("Updated joke " + id);
+                repository.save(joke);
+            }
+            if (fsync == JokeJournal.Fsync.INTERVAL) {
+                journal.force();
+            }
+            seconds = (System.nanoTime() - start) / 1e9;
+        }
+        System.out.printf("%-24s %8.0f writes/s  (%d writes, journal %d KB)%n", "write, fsync=" + fsync, writes / seconds, writes,
+                Files.size(directory.resolve("journal-0.log")) / 1024);
+    }
+
+    private static void recover(Path directory, String name, int entries) {
+        long start = System.nanoTime();
+        try (JokeJournal journal = journal(directory, JokeJournal.Fsync.NEVER)) {
+            InMemoryJokeRepository repository = new InMemoryJokeRepository(journal);
+            System.out.printf("%-24s %8.1f ms%n", name, (System.nanoTime() - start) / 1e6);
+            assertThat(repository.count()).isEqualTo(entries);
+        }
+    }
+
+    private static JokeJournal journal(Path directory, JokeJournal.Fsync fsync) {
+        return new JokeJournal(directory, fsync, 64 * 1024 * 1024);
+    }
+}
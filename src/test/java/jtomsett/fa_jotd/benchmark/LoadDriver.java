@@ -0,0 +1,143 @@
+package jtomsett.fa_jotd.benchmark;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Closed-loop HTTP load generator: each of {@code concurrency} virtual threads sends a request,
+ * waits for the response and sends the next one. Latencies are recorded in microseconds, per
+ * operation when driving a weighted mix.
+ */
+final class LoadDriver {
+
+    static final String TOTAL = "total";
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private LoadDriver() {
+    }
+
+    static Result run(int concurrency, Duration warmup, Duration duration, Supplier<HttpRequest> requests) throws Exception {
+        return run(concurrency, warmup, duration, List.of(new Operation("request", 1, requests))).get(TOTAL);
+    }
+
+    /**
+     * Drives the operations in proportion to their weights and returns a result per operation name,
+     * in the order given, followed by the {@link #TOTAL} across all of them.
+     */
+    static Map<String, Result> run(int concurrency, Duration warmup, Duration duration, List<Operation> mix) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        int totalWeight = mix.stream().mapToInt(Operation::weight).sum();
+        Recorder[] recorders = new Recorder[mix.size()];
+        AtomicLong[] errors = new AtomicLong[mix.size()];
+        for (int i = 0; i < mix.size(); i++) {
+            recorders[i] = new Recorder(MAX_LATENCY_MICROS, 3);
+            errors[i] = new AtomicLong();
+        }
+        long warmupEnd = System.nanoTime() + warmup.toNanos();
+        long end = warmupEnd + duration.toNanos();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(clients.submit(() -> {
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        int operation = pick(mix, ThreadLocalRandom.current().nextInt(totalWeight));
+                        boolean measured = now >= warmupEnd;
+                        try {
+                            HttpResponse<Void> response = client.send(mix.get(operation).request().get(),
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (measured && response.statusCode() >= 500) {
+                                errors[operation].incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            if (measured) {
+                                errors[operation].incrementAndGet();
+                            }
+                        }
+                        if (measured) {
+                            recorders[operation].recordValue(Math.min((System.nanoTime() - now) / 1_000, MAX_LATENCY_MICROS));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        Map<String, Result> results = new LinkedHashMap<>();
+        Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+        long totalErrors = 0;
+        for (int i = 0; i < mix.size(); i++) {
+            Histogram histogram = recorders[i].getIntervalHistogram();
+            total.add(histogram);
+            totalErrors += errors[i].get();
+            results.put(mix.get(i).name(), new Result(histogram, errors[i].get(), duration));
+        }
+        results.put(TOTAL, new Result(total, totalErrors, duration));
+        return results;
+    }
+
+    private static int pick(List<Operation> mix, int ticket) {
+        for (int i = 0; i < mix.size(); i++) {
+            ticket -= mix.get(i).weight();
+            if (ticket < 0) {
+                return i;
+            }
+        }
+        return mix.size() - 1;
+    }
+
+    /**
+     * One kind of request in a mix; {@code weight} is its share relative to the other operations.
+     */
+    record Operation(String name, int weight, Supplier<HttpRequest> request) {
+    }
+
+    record Result(Histogram histogram, long errors, Duration duration) {
+
+        long requests() {
+            return histogram.getTotalCount();
+        }
+
+        double throughput() {
+            return requests() / (duration.toMillis() / 1000.0);
+        }
+
+        double p50Millis() {
+            return histogram.getValueAtPercentile(50) / 1000.0;
+        }
+
+        double p99Millis() {
+            return histogram.getValueAtPercentile(99) / 1000.0;
+        }
+
+        String summary(String name) {
+            return String.format("%-24s requests=%d errors=%d throughput=%.0f req/s p50=%.2fms p99=%.2fms max=%.2fms",
+                    name, requests(), errors, throughput(), p50Millis(), p99Millis(), histogram.getMaxValue() / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package jtomsett.fa_jotd.benchmark;
+
+import jtomsett.fa_jotd.FaJotdApplication;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.BatchImportResult;
+import jtomsett.fa_jotd.service.JokeService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Pages of jokes resolved the way a feed does it: {@code jotd.benchmark.page-size} random ids, fetched with one
+ * {@code GET /joke?id=} each versus one {@code GET /jokes?ids=}, with the caches on and off. Each client loads a
+ * page, waits for all of it, then loads the next; latency is per page.
+ * <p>
+ * {@code mvn test -Pbenchmark -Dtest=MultiGetBenchmark -Djotd.benchmark.page-size=50}
+ */
+@Tag("benchmark")
+class MultiGetBenchmark {
+
+    private static final int CONCURRENCY = Integer.getInteger("jotd.benchmark.concurrency", 20);
+    private static final int PAGE_SIZE = Integer.getInteger("jotd.benchmark.page-size", 50);
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("jotd.benchmark.warmup-seconds", 5));
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("jotd.benchmark.duration-seconds", 15));
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int DAYS = 3650;
+
+    @Test
+    void perIdVersusMultiGet() throws Exception {
+        List<String> lines = new ArrayList<>();
+        lines.addAll(run("caches on", true));
+        lines.addAll(run("caches off", false));
+
+        System.out.println("Pages of " + PAGE_SIZE + " ids with " + CONCURRENCY + " concurrent clients");
+        lines.forEach(System.out::println);
+    }
+
+    private static List<String> run(String name, boolean caches) throws Exception {
+        List<String> args = new ArrayList<>(List.of("--server.port=0", "--spring.datasource.url=jdbc:h2:mem:benchmark-multi-get-" + caches));
+        if (!caches) {
+            args.addAll(List.of("--jotd.lookup-cache.max-size=0", "--jotd.response-cache.max-size=0"));
+        }
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FaJotdApplication.class).run(args.toArray(String[]::new))) {
+            List<Long> ids = seed(context.getBean(JokeService.class));
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+
+            return List.of(
+                    drive(name + ", per id", (page, errors) -> {
+                        for (Long id : page) {
+                            send(client, base + "/joke?id=" + id, errors);
+                        }
+                        return page.size();
+                    }, ids),
+                    drive(name + ", multi-get", (page, errors) -> {
+                        send(client, base + "/jokes?ids=" + page.stream().map(String::valueOf).collect(Collectors.joining(",")), errors);
+                        return 1;
+                    }, ids));
+        }
+    }
+
+    private static String drive(String name, PageLoader loader, List<Long> ids) throws Exception {
+        LongAdder errors = new LongAdder();
+        Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 3);
+        long warmupEnd = System.nanoTime() + WARMUP.toNanos();
+        long end = warmupEnd + DURATION.toNanos();
+        long[] requests = new long[CONCURRENCY];
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < CONCURRENCY; i++) {
+                int client = i;
+                futures.add(clients.submit(() -> {
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        List<Long> page = new ArrayList<>(PAGE_SIZE);
+                        for (int j = 0; j < PAGE_SIZE; j++) {
+                            page.add(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+                        }
+                        int sent = loader.load(page, errors);
+                        if (now >= warmupEnd) {
+                            requests[client] += sent;
+                            recorder.recordValue(Math.min((System.nanoTime() - now) / 1_000, MAX_LATENCY_MICROS));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        Histogram pages = recorder.getIntervalHistogram();
+        double seconds = DURATION.toMillis() / 1000.0;
+        long sent = 0;
+        for (long count : requests) {
+            sent += count;
+        }
+        return String.format("%-24s pages=%.0f/s requests=%.0f/s errors=%d p50=%.2fms p99=%.2fms", name, pages.getTotalCount() / seconds,
+                sent / seconds, errors.sum(), pages.getValueAtPercentile(50) / 1000.0, pages.getValueAtPercentile(99) / 1000.0);
+    }
+
+    private static void send(HttpClient client, String uri, LongAdder errors) throws Exception {
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(uri)).GET().build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            errors.increment();
+        }
+    }
+
+    private static List<Long> seed(JokeService jokeService) {
+        LocalDate start = LocalDate.now().minusDays(DAYS);
+        List<Joke> jokes = new ArrayList<>(DAYS);
+        for (int i = 0; i < DAYS; i++) {
+            jokes.add(new Joke("Joke " + i, start.plusDays(i)));
+        }
+        return jokeService.addJokes(jokes).stream().map(BatchImportResult::joke).map(Joke::getId).toList();
+    }
+
+    private interface PageLoader {
+        // Returns the number of HTTP requests it sent.
+        int load(List<Long> page, LongAdder errors) throws Exception;
+    }
+}
@@ -0,0 +1,175 @@
+package jtomsett.fa_jotd.benchmark;
+
+import jtomsett.fa_jotd.FaJotdApplication;
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.BatchImportResult;
+import jtomsett.fa_jotd.service.JokeService;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays the read-heavy shape of production traffic (see {@code Scalability_Performance_diagrams.drawio}):
+ * mostly "Read JOTD" calls for today's joke, some lookups by date and id, and a trickle of admin adds
+ * and updates, all against the real controller on a random port.
+ * <p>
+ * Each run writes per-operation throughput and p99 to {@code target/benchmark/production-mix.properties}.
+ * Pass a previous run's file as {@code -Djotd.benchmark.baseline} and the run fails when any operation's p99
+ * rises, or its throughput falls, by more than {@code jotd.benchmark.tolerance} (default 10%).
+ * {@code jotd.benchmark.max-p99-millis} and {@code jotd.benchmark.min-throughput} set absolute limits on the total.
+ * <p>
+ * {@code mvn test -Pbenchmark -Dtest=ProductionMixBenchmark -Djotd.benchmark.mix=today:90,date:5,id:3,add:1,update:1}
+ */
+@Tag("benchmark")
+class ProductionMixBenchmark {
+
+    private static final int CONCURRENCY = Integer.getInteger("jotd.benchmark.concurrency", 200);
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("jotd.benchmark.warmup-seconds", 5));
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("jotd.benchmark.duration-seconds", 20));
+    private static final String MIX = System.getProperty("jotd.benchmark.mix", "today:80,date:12,id:6,add:1,update:1");
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("jotd.benchmark.tolerance", "0.10"));
+    private static final String BASELINE = System.getProperty("jotd.benchmark.baseline");
+    private static final String MAX_P99_MILLIS = System.getProperty("jotd.benchmark.max-p99-millis");
+    private static final String MIN_THROUGHPUT = System.getProperty("jotd.benchmark.min-throughput");
+    private static final Path OUTPUT = Path.of("target", "benchmark", "production-mix.properties");
+    private static final int DAYS = 365;
+
+    @Test
+    void productionMix() throws Exception {
+        Map<String, LoadDriver.Result> results;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FaJotdApplication.class)
+                .run("--server.port=0", "--spring.datasource.url=jdbc:h2:mem:benchmark-mix")) {
+            JokeService jokeService = context.getBean(JokeService.class);
+            Seed seed = seed(jokeService);
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            results = LoadDriver.run(CONCURRENCY, WARMUP, DURATION, mix(base, seed, jokeService));
+        }
+
+        System.out.println("Production mix " + MIX + " with " + CONCURRENCY + " concurrent clients");
+        results.forEach((name, result) -> System.out.println(result.summary(name)));
+        write(results);
+
+        SoftAssertions softly = new SoftAssertions();
+        LoadDriver.Result total = results.get(LoadDriver.TOTAL);
+        if (MAX_P99_MILLIS != null) {
+            softly.assertThat(total.p99Millis()).as("total p99 (ms)").isLessThanOrEqualTo(Double.parseDouble(MAX_P99_MILLIS));
+        }
+        if (MIN_THROUGHPUT != null) {
+            softly.assertThat(total.throughput()).as("total throughput (req/s)").isGreaterThanOrEqualTo(Double.parseDouble(MIN_THROUGHPUT));
+        }
+        if (BASELINE != null) {
+            Properties baseline = read(Path.of(BASELINE));
+            results.forEach((name, result) -> {
+                String p99 = baseline.getProperty(name + ".p99-millis");
+                if (p99 != null) {
+                    softly.assertThat(result.p99Millis()).as(name + " p99 (ms) against baseline " + p99)
+                            .isLessThanOrEqualTo(Double.parseDouble(p99) * (1 + TOLERANCE));
+                }
+                String throughput = baseline.getProperty(name + ".throughput");
+                if (throughput != null) {
+                    softly.assertThat(result.throughput()).as(name + " throughput (req/s) against baseline " + throughput)
+                            .isGreaterThanOrEqualTo(Double.parseDouble(throughput) * (1 - TOLERANCE));
+                }
+            });
+        }
+        softly.assertThat(total.errors()).as("server errors").isZero();
+        softly.assertAll();
+    }
+
+    private static List<LoadDriver.Operation> mix(String base, Seed seed, JokeService jokeService) {
+        AtomicInteger added = new AtomicInteger();
+        List<LoadDriver.Operation> operations = new ArrayList<>();
+        for (String entry : MIX.split(",")) {
+            String[] parts = entry.trim().split(":");
+            String name = parts[0];
+            int weight = Integer.parseInt(parts[1]);
+            operations.add(new LoadDriver.Operation(name, weight, switch (name) {
+                case "today" -> () -> HttpRequest.newBuilder(URI.create(base + "/joke")).GET().build();
+                case "date" -> () -> HttpRequest.newBuilder(URI.create(base + "/joke?date=" + seed.randomDate())).GET().build();
+                case "id" -> () -> HttpRequest.newBuilder(URI.create(base + "/joke?id=" + seed.randomId())).GET().build();
+                case "add" -> () -> json(base + "/joke/add", "POST", "{\"joke\":\"Load joke\",\"date\":\""
+                        + seed.end().plusDays(added.incrementAndGet()) + "\"}");
+                // Sends the version just read, as every client must; a clash with another update is a 409, not an error.
+                case "update" -> () -> {
+                    int index = ThreadLocalRandom.current().nextInt(seed.ids().size());
+                    Long id = seed.ids().get(index);
+                    Long version = jokeService.getJokeById(id).map(Joke::getVersion).orElse(0L);
+                    return json(base + "/joke/update", "PUT", "{\"id\":" + id + ",\"version\":" + version + ",\"joke\":\"Updated joke "
+                            + System.nanoTime() + "\",\"date\":\"" + seed.start().plusDays(index) + "\"}");
+                };
+                default -> throw new IllegalArgumentException("Unknown operation in jotd.benchmark.mix: " + name);
+            }));
+        }
+        return operations;
+    }
+
+    private static HttpRequest json(String uri, String method, String body) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static Seed seed(JokeService jokeService) {
+        LocalDate start = LocalDate.now().minusDays(DAYS / 2);
+        List<Joke> jokes = new ArrayList<>(DAYS);
+        for (int i = 0; i < DAYS; i++) {
+            jokes.add(new Joke("Joke " + i, start.plusDays(i)));
+        }
+        List<Long> ids = jokeService.addJokes(jokes).stream().map(BatchImportResult::joke).map(Joke::getId).toList();
+        return new Seed(start, ids);
+    }
+
+    private static void write(Map<String, LoadDriver.Result> results) throws IOException {
+        Properties properties = new Properties();
+        results.forEach((name, result) -> {
+            properties.setProperty(name + ".throughput", String.format("%.1f", result.throughput()));
+            properties.setProperty(name + ".p99-millis", String.format("%.3f", result.p99Millis()));
+        });
+        Files.createDirectories(OUTPUT.getParent());
+        try (Writer writer = Files.newBufferedWriter(OUTPUT)) {
+            properties.store(writer, "ProductionMixBenchmark " + MIX + " concurrency=" + CONCURRENCY);
+        }
+    }
+
+    private static Properties read(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private record Seed(LocalDate start, List<Long> ids) {
+
+        LocalDate end() {
+            return start.plusDays(ids.size());
+        }
+
+        LocalDate randomDate() {
+            return start.plusDays(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+
+        Long randomId() {
+            return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+    }
+}
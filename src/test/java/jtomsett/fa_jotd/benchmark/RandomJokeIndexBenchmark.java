@@ -0,0 +1,60 @@
+package jtomsett.fa_jotd.benchmark;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import jtomsett.fa_jotd.service.RandomJokeIndex;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Mean time of {@link RandomJokeIndex#pick} over the whole table and within a range, with a joke on every
+ * other day so ranges also cover days without one.
+ * <p>
+ * {@code mvn test -Pbenchmark -Dtest=RandomJokeIndexBenchmark -Djotd.benchmark.jokes=1000000}
+ */
+@Tag("benchmark")
+class RandomJokeIndexBenchmark {
+
+    private static final int JOKES = Integer.getInteger("jotd.benchmark.jokes", 1_000_000);
+    private static final int PICKS = Integer.getInteger("jotd.benchmark.picks", 1_000_000);
+    private static final LocalDate START = LocalDate.of(2000, 1, 1);
+
+    @Test
+    void pick() {
+        RandomJokeIndex index = new RandomJokeIndex(mock(JokeRepository.class), mock(PlatformTransactionManager.class));
+        for (int i = 0; i < JOKES; i++) {
+            Joke joke = new Joke("Joke " + i, START.plusDays(i * 2L));
+            joke.setId(i + 1L);
+            index.onJokeChanged(JokeChangedEvent.added(joke));
+        }
+        assertThat(index.size()).isEqualTo(JOKES);
+
+        LocalDate from = START.plusDays(JOKES / 5);
+        LocalDate to = START.plusDays(JOKES * 9L / 5);
+        // Warm up both paths before timing either.
+        for (int i = 0; i < PICKS / 5; i++) {
+            index.pick(null, null);
+            index.pick(from, to);
+        }
+
+        System.out.println("Random joke index over " + JOKES + " jokes");
+        time(index, "whole table", null, null);
+        time(index, "range of 80%", from, to);
+        time(index, "range of 50 jokes", START.plusDays(JOKES), START.plusDays(JOKES + 99L));
+    }
+
+    private static void time(RandomJokeIndex index, String name, LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        for (int i = 0; i < PICKS; i++) {
+            index.pick(from, to);
+        }
+        System.out.printf("%-24s %8.0f ns per pick%n", name, (double) (System.nanoTime() - start) / PICKS);
+    }
+}
@@ -0,0 +1,145 @@
+package jtomsett.fa_jotd.benchmark;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.repository.InMemoryJokeRepository;
+import jtomsett.fa_jotd.service.JokeSearchIndex;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Build time, heap footprint and query latency of {@link JokeSearchIndex} over generated jokes whose words follow
+ * a Zipf distribution, as English text roughly does. The heap is measured after a full GC, so run it alone.
+ * <p>
+ * {@code mvn test -Pbenchmark -Dtest=SearchIndexBenchmark -Djotd.benchmark.jokes=1000000}
+ */
+@Tag("benchmark")
+class SearchIndexBenchmark {
+
+    private static final int JOKES = Integer.getInteger("jotd.benchmark.jokes", 1_000_000);
+    private static final int QUERIES = Integer.getInteger("jotd.benchmark.queries", 2_000);
+    private static final int VOCABULARY = 50_000;
+    private static final String[] SYLLABLES = {"ba", "ko", "ri", "tu", "me", "sa", "lo", "ni", "de", "fu", "ga", "pe", "zo", "chi", "wa"};
+    private static final LocalDate START = LocalDate.of(2000, 1, 1);
+
+    @Test
+    void buildAndQuery() {
+        SplittableRandom random = new SplittableRandom(42);
+        String[] words = words(random);
+        double[] cumulative = zipf();
+
+        InMemoryJokeRepository repository = repository(words, cumulative, random);
+        long before = usedHeap();
+        JokeSearchIndex index = new JokeSearchIndex(repository, mock(PlatformTransactionManager.class));
+        long start = System.nanoTime();
+        index.refresh();
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+        long bytes = usedHeap() - before;
+        assertThat(index.size()).isEqualTo(JOKES);
+
+        System.out.println("Search index over " + JOKES + " jokes, " + VOCABULARY + " words");
+        System.out.printf("%-24s %8.0f ms%n", "build", buildMillis);
+        System.out.printf("%-24s %8.0f MB  (%d bytes per joke)%n", "heap", bytes / 1e6, bytes / JOKES);
+
+        // Rank 0 is the most common word; low ranks appear in most jokes, high ranks in a handful.
+        query(index, "common word", q -> words[q % 3]);
+        query(index, "mid-frequency word", q -> words[100 + q % 100]);
+        query(index, "rare word", q -> words[10_000 + q % 1000]);
+        query(index, "two words", q -> words[20 + q % 50] + " " + words[200 + q % 500]);
+        query(index, "prefix", q -> words[500 + q % 500].substring(0, 4));
+
+        start = System.nanoTime();
+        for (long id = 1; id <= 10_000; id++) {
+            Joke joke = repository.findById(id).orElseThrow();
+            joke.setJoke(sentence(words, cumulative, random, 12));
+            index.onJokeChanged(JokeChangedEvent.updated(joke.getDate(), joke));
+        }
+        System.out.printf("%-24s %8.1f µs%n", "update, mean", (System.nanoTime() - start) / 1e3 / 10_000);
+    }
+
+    private static void query(JokeSearchIndex index, String name, IntFunction<String> queries) {
+        for (int q = 0; q < QUERIES; q++) {
+            index.search(queries.apply(q), 20);
+        }
+        Histogram histogram = new Histogram(3);
+        long hits = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            String query = queries.apply(q);
+            long start = System.nanoTime();
+            hits += index.search(query, 20).size();
+            histogram.recordValue((System.nanoTime() - start) / 1000);
+        }
+        System.out.printf("%-24s p50 %8d µs  p99 %8d µs  (%.1f hits per query)%n", name,
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99), (double) hits / QUERIES);
+    }
+
+    private static InMemoryJokeRepository repository(String[] words, double[] cumulative, SplittableRandom random) {
+        List<Joke> jokes = new ArrayList<>(JOKES);
+        for (int i = 0; i < JOKES; i++) {
+            Joke joke = new Joke(sentence(words, cumulative, random, 8 + random.nextInt(13)), START.plusDays(i));
+            if (random.nextBoolean()) {
+                joke.setDescription(sentence(words, cumulative, random, 5 + random.nextInt(11)));
+            }
+            jokes.add(joke);
+        }
+        InMemoryJokeRepository repository = new InMemoryJokeRepository();
+        repository.saveAll(jokes);
+        return repository;
+    }
+
+    private static String[] words(SplittableRandom random) {
+        Set<String> unique = new LinkedHashSet<>();
+        while (unique.size() < VOCABULARY) {
+            StringBuilder word = new StringBuilder();
+            for (int i = 1 + random.nextInt(4); i >= 0; i--) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            unique.add(word.toString());
+        }
+        return unique.toArray(String[]::new);
+    }
+
+    private static double[] zipf() {
+        double[] cumulative = new double[VOCABULARY];
+        double sum = 0;
+        for (int rank = 0; rank < VOCABULARY; rank++) {
+            sum += 1.0 / (rank + 1);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < VOCABULARY; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static String sentence(String[] words, double[] cumulative, SplittableRandom random, int length) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+            sentence.append(i == 0 ? "" : " ").append(words[rank < 0 ? -rank - 1 : rank]);
+        }
+        return sentence.append('.').toString();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,131 @@
+package jtomsett.fa_jotd.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Starts the packaged application in a fresh JVM and reports the time until {@code GET /joke} first answers,
+ * and the process RSS at that point, for the plain jar and for the AOT + AppCDS build of the "aot" profile.
+ * The database starts empty, so the first answer is a 404: it still means the whole stack is serving.
+ * <p>
+ * {@code mvn -Paot -DskipTests package && mvn test -Pbenchmark -Dtest=StartupBenchmark -Djotd.benchmark.runs=5}
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+    private static final int RUNS = Integer.getInteger("jotd.benchmark.runs", 3);
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+    private static final Path TARGET = Path.of("target");
+    private static final Path EXTRACTED = TARGET.resolve("app");
+
+    @Test
+    void plainJarVersusAotAndCds() throws Exception {
+        Path jar = jar(TARGET);
+        Path extractedJar = EXTRACTED.resolve(jar.getFileName());
+        Path archive = EXTRACTED.resolve("application.jsa");
+        assumeTrue(Files.exists(extractedJar) && Files.exists(archive), "Run mvn -Paot -DskipTests package first");
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> results = new ArrayList<>();
+        results.add(run("jar", List.of(java, "-jar", jar.toString())));
+        results.add(run("jar, prod profile", List.of(java, "-jar", jar.toString(), "--spring.profiles.active=prod")));
+        results.add(run("aot + cds, prod profile", List.of(java, "-XX:SharedArchiveFile=" + archive,
+                "-Dspring.aot.enabled=true", "-jar", extractedJar.toString(), "--spring.profiles.active=prod")));
+
+        System.out.println("Time to first GET /joke response, median of " + RUNS + " starts");
+        results.forEach(System.out::println);
+    }
+
+    private static String run(String name, List<String> command) throws Exception {
+        long[] millis = new long[RUNS];
+        long[] rssKb = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            int port = freePort();
+            List<String> args = new ArrayList<>(command);
+            args.add("--server.port=" + port);
+            args.add("--management.server.port=0");
+
+            Path log = Files.createDirectories(TARGET.resolve("benchmark")).resolve("startup-" + name.replaceAll("\\W+", "-") + ".log");
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(args).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+            try {
+                awaitFirstResponse(process, port);
+                millis[i] = (System.nanoTime() - start) / 1_000_000;
+                rssKb[i] = rssKb(process.pid());
+            } finally {
+                process.destroy();
+                process.waitFor();
+            }
+        }
+        return String.format("%-28s startup=%dms rss=%dMB", name, median(millis), median(rssKb) / 1024);
+    }
+
+    private static void awaitFirstResponse(Process process, int port) throws Exception {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/joke")).GET().build();
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 500) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("No response from GET /joke within " + TIMEOUT);
+    }
+
+    private static long rssKb(long pid) throws IOException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        try (Stream<String> lines = Files.lines(status)) {
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> Long.parseLong(line.replaceAll("\\D+", "")))
+                    .findFirst()
+                    .orElse(0L);
+        }
+    }
+
+    private static Path jar(Path target) throws IOException {
+        try (Stream<Path> files = Files.list(target)) {
+            return files.filter(file -> file.toString().endsWith(".jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No jar in " + target));
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,31 @@
+package jtomsett.fa_jotd.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AcceptEncodingTest {
+
+    @Test
+    void allowsGzipTest() {
+        assertTrue(AcceptEncoding.allowsGzip("gzip"));
+        assertTrue(AcceptEncoding.allowsGzip("gzip, deflate, br"));
+        assertTrue(AcceptEncoding.allowsGzip("deflate;q=1.0, GZIP;q=0.5"));
+        assertTrue(AcceptEncoding.allowsGzip("*"));
+        assertTrue(AcceptEncoding.allowsGzip("x-gzip"));
+    }
+
+    @Test
+    void refusesGzipTest() {
+        assertFalse(AcceptEncoding.allowsGzip(null));
+        assertFalse(AcceptEncoding.allowsGzip(""));
+        assertFalse(AcceptEncoding.allowsGzip("identity"));
+        assertFalse(AcceptEncoding.allowsGzip("gzip;q=0"));
+        assertFalse(AcceptEncoding.allowsGzip("identity, gzip;q=0"));
+        assertFalse(AcceptEncoding.allowsGzip("gzip ; q=0.000"));
+        assertFalse(AcceptEncoding.allowsGzip("*, gzip;q=0"));
+        assertFalse(AcceptEncoding.allowsGzip("*;q=0"));
+        assertFalse(AcceptEncoding.allowsGzip("gzip;q=oops"));
+        assertFalse(AcceptEncoding.allowsGzip("gzipped"));
+    }
+}
@@ -0,0 +1,139 @@
+package jtomsett.fa_jotd.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jtomsett.fa_jotd.config.BulkheadProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkheadFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BulkheadFilter filter;
+
+    @BeforeEach
+    void beforeEach() {
+        filter(Duration.ofMillis(50), Duration.ofSeconds(3));
+    }
+
+    @AfterEach
+    void afterEach() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void fullAdminBulkheadRejectsWithRetryAfterTest() throws Exception {
+        Future<MockHttpServletResponse> running = executor.submit(() -> perform("POST", blocking()));
+        awaitActive("admin", 1);
+
+        MockHttpServletResponse rejected = perform("PUT", (request, response) -> fail("admitted past a full bulkhead"));
+        assertEquals(503, rejected.getStatus());
+        assertEquals("3", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, meterRegistry.get("jotd.bulkhead.rejected").tag("bulkhead", "admin").counter().count());
+
+        // Reads have their own slots, including the multi-get sent as POST.
+        assertEquals(200, perform("GET", (request, response) -> { }).getStatus());
+        MockHttpServletResponse lookup = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", JokeRestController.LOOKUP_PATH), lookup, (request, response) -> { });
+        assertEquals(200, lookup.getStatus());
+
+        release.countDown();
+        assertEquals(200, running.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(200, perform("DELETE", (request, response) -> { }).getStatus());
+        assertEquals(0, meterRegistry.get("jotd.bulkhead.active").tag("bulkhead", "admin").gauge().value());
+    }
+
+    @Test
+    void queuedRequestIsAdmittedWhenASlotFreesTest() throws Exception {
+        filter(Duration.ofSeconds(5), Duration.ofSeconds(1));
+        Future<MockHttpServletResponse> running = executor.submit(() -> perform("GET", blocking()));
+        awaitActive("read", 1);
+
+        Future<MockHttpServletResponse> queued = executor.submit(() -> perform("GET", (request, response) -> { }));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("jotd.bulkhead.queued").tag("bulkhead", "read").gauge().value() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, meterRegistry.get("jotd.bulkhead.queued").tag("bulkhead", "read").gauge().value());
+
+        release.countDown();
+        assertEquals(200, running.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(200, queued.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(0, meterRegistry.get("jotd.bulkhead.rejected").tag("bulkhead", "read").counter().count());
+        assertEquals(2, meterRegistry.get("jotd.bulkhead.wait").tag("bulkhead", "read").timer().count());
+    }
+
+    @Test
+    void asyncResponseKeepsItsSlotUntilCompleteTest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/jokes/export");
+        request.setAsyncSupported(true);
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+        assertEquals(1, meterRegistry.get("jotd.bulkhead.active").tag("bulkhead", "read").gauge().value());
+
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        assertEquals(0, meterRegistry.get("jotd.bulkhead.active").tag("bulkhead", "read").gauge().value());
+    }
+
+    @Test
+    void readsLeaveTheAdminShareOfThePoolTest() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        Duration maxWait = Duration.ofMillis(50);
+        filter = new BulkheadFilter(new BulkheadProperties(true, null, maxWait, 1, maxWait, Duration.ofSeconds(1)), 3, meterRegistry);
+        executor.submit(() -> perform("GET", blocking()));
+        executor.submit(() -> perform("GET", blocking()));
+        awaitActive("read", 2);
+
+        assertEquals(503, perform("GET", (request, response) -> fail("admitted past the pool")).getStatus());
+        assertEquals(200, perform("POST", (request, response) -> { }).getStatus());
+        // A configured limit is held to the pool as well.
+        assertEquals(2, new BulkheadProperties(true, 1000, maxWait, 1, maxWait, Duration.ofSeconds(1)).readLimit(3));
+        assertEquals(1, new BulkheadProperties(true, 1, maxWait, 1, maxWait, Duration.ofSeconds(1)).readLimit(3));
+    }
+
+    // One read slot and one admin slot.
+    private void filter(Duration maxWait, Duration retryAfter) {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new BulkheadFilter(new BulkheadProperties(true, 1, maxWait, 1, maxWait, retryAfter), 10, meterRegistry);
+    }
+
+    private MockHttpServletResponse perform(String method, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(method, "/joke"), response, chain);
+        return response;
+    }
+
+    private FilterChain blocking() {
+        return (request, response) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private void awaitActive(String bulkhead, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("jotd.bulkhead.active").tag("bulkhead", bulkhead).gauge().value() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, meterRegistry.get("jotd.bulkhead.active").tag("bulkhead", bulkhead).gauge().value());
+    }
+}
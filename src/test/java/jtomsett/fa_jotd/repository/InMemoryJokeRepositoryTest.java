@@ -0,0 +1,74 @@
+package jtomsett.fa_jotd.repository;
+
+import jtomsett.fa_jotd.dao.Joke;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryJokeRepositoryTest extends JokeRepositoryContractTest {
+
+    private InMemoryJokeRepository repository;
+
+    @BeforeEach
+    void beforeEach() {
+        repository = new InMemoryJokeRepository();
+    }
+
+    @Override
+    protected JokeRepository repository() {
+        return repository;
+    }
+
+    @Override
+    protected boolean limitsDateSpan() {
+        return true;
+    }
+
+    @Test
+    void saveAllIsAtomicTest() {
+        LocalDate date = LocalDate.of(2020, 1, 1);
+        repository.save(new Joke("Joke", date));
+
+        List<Joke> jokes = List.of(new Joke("New", date.plusDays(1)), new Joke("Clash", date));
+        assertThrows(DataIntegrityViolationException.class, () -> repository.saveAll(jokes));
+
+        assertEquals(1, repository.count());
+        assertTrue(repository.findByDate(date.plusDays(1)).isEmpty());
+    }
+
+    @Test
+    void readsSeeSnapshotTest() {
+        LocalDate date = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < 5; i++) {
+            repository.save(new Joke("Joke " + i, date.plusDays(i)));
+        }
+
+        // Writes made while iterating publish a new state and leave the one being read alone.
+        int[] seen = {0};
+        repository.forEachJoke(null, null, joke -> {
+            seen[0]++;
+            repository.deleteByDateRange(date, date.plusDays(10));
+        });
+        assertEquals(5, seen[0]);
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void idsSurviveManyWritesTest() {
+        LocalDate date = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < 1000; i++) {
+            repository.save(new Joke("Joke " + i, date.plusDays(i)));
+        }
+        repository.deleteByDateRange(date, date.plusDays(499));
+
+        for (long id = 1; id <= 1000; id++) {
+            assertEquals(id > 500, repository.existsById(id), "id " + id);
+        }
+        assertEquals("Joke 999", repository.findById(1000L).orElseThrow().getJoke());
+    }
+}
@@ -0,0 +1,234 @@
+package jtomsett.fa_jotd.repository;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.exceptions.JokeDateOutOfRangeException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behaviour every {@link JokeRepository} must share, whichever storage backs it. Each subclass
+ * supplies a repository that starts empty for every test.
+ */
+abstract class JokeRepositoryContractTest {
+
+    private static final LocalDate DATE = LocalDate.of(2020, 1, 1);
+
+    protected abstract JokeRepository repository();
+
+    /**
+     * @return whether the storage rejects dates more than {@link InMemoryJokeRepository#MAX_SPAN_DAYS} apart
+     */
+    protected boolean limitsDateSpan() {
+        return false;
+    }
+
+    @Test
+    void saveAssignsIdAndVersionTest() {
+        Joke joke = repository().save(new Joke("Joke", DATE));
+
+        assertNotNull(joke.getId());
+        assertEquals(0L, joke.getVersion());
+        assertEquals("Joke", repository().findById(joke.getId()).orElseThrow().getJoke());
+    }
+
+    @Test
+    void findByDateTest() {
+        repository().save(new Joke("Joke", DATE));
+
+        assertEquals("Joke", repository().findByDate(DATE).orElseThrow().getJoke());
+        assertTrue(repository().findByDate(DATE.plusDays(1)).isEmpty());
+        assertTrue(repository().findByDate(DATE.minusDays(1)).isEmpty());
+    }
+
+    @Test
+    void findByIdMissingTest() {
+        assertTrue(repository().findById(1L).isEmpty());
+        assertFalse(repository().existsById(1L));
+    }
+
+    @Test
+    void nullIdFailsTest() {
+        assertThrows(InvalidDataAccessApiUsageException.class, () -> repository().findById(null));
+        assertThrows(InvalidDataAccessApiUsageException.class, () -> repository().existsById(null));
+    }
+
+    @Test
+    void dateBeyondSpanTest() {
+        repository().save(new Joke("Joke", DATE));
+        Joke far = new Joke("Far", DATE.plusDays(InMemoryJokeRepository.MAX_SPAN_DAYS));
+
+        if (limitsDateSpan()) {
+            assertThrows(JokeDateOutOfRangeException.class, () -> repository().save(far));
+            assertEquals(1, repository().count());
+            assertNull(far.getId());
+        } else {
+            repository().save(far);
+            assertEquals("Far", repository().findByDate(far.getDate()).orElseThrow().getJoke());
+        }
+    }
+
+    @Test
+    void saveDuplicateDateFailsTest() {
+        repository().save(new Joke("Joke", DATE));
+
+        assertThrows(DataIntegrityViolationException.class, () -> repository().saveAndFlush(new Joke("Other", DATE)));
+        assertEquals(1, repository().count());
+    }
+
+    @Test
+    void updateIncrementsVersionAndMovesDateTest() {
+        Long id = repository().save(new Joke("Joke", DATE)).getId();
+
+        Joke existing = repository().findById(id).orElseThrow();
+        existing.setJoke("Updated");
+        existing.setDate(DATE.plusDays(3));
+        Joke saved = repository().saveAndFlush(existing);
+
+        assertEquals(1L, saved.getVersion());
+        assertTrue(repository().findByDate(DATE).isEmpty());
+        assertEquals("Updated", repository().findByDate(DATE.plusDays(3)).orElseThrow().getJoke());
+        assertEquals(1, repository().count());
+    }
+
+    @Test
+    void updateOntoTakenDateFailsTest() {
+        repository().save(new Joke("Joke", DATE));
+        Long id = repository().save(new Joke("Other", DATE.plusDays(1))).getId();
+
+        Joke existing = repository().findById(id).orElseThrow();
+        existing.setDate(DATE);
+
+        assertThrows(DataIntegrityViolationException.class, () -> repository().saveAndFlush(existing));
+        assertEquals("Other", repository().findByDate(DATE.plusDays(1)).orElseThrow().getJoke());
+    }
+
+    @Test
+    void staleUpdateFailsTest() {
+        Long id = repository().save(new Joke("Joke", DATE)).getId();
+        Joke first = repository().findById(id).orElseThrow();
+        Joke second = repository().findById(id).orElseThrow();
+
+        first.setJoke("First");
+        repository().saveAndFlush(first);
+        second.setJoke("Second");
+
+        assertThrows(OptimisticLockingFailureException.class, () -> repository().saveAndFlush(second));
+        assertEquals("First", repository().findById(id).orElseThrow().getJoke());
+    }
+
+    @Test
+    void findByIdIsNotAffectedByUnsavedChangesTest() {
+        Long id = repository().save(new Joke("Joke", DATE)).getId();
+
+        repository().findById(id).orElseThrow().setJoke("Unsaved");
+
+        assertEquals("Joke", repository().findById(id).orElseThrow().getJoke());
+    }
+
+    @Test
+    void saveAllTest() {
+        List<Joke> jokes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            jokes.add(new Joke("Joke " + i, DATE.plusDays(i * 2L)));
+        }
+        repository().saveAll(jokes);
+        repository().flush();
+
+        assertEquals(10, repository().count());
+        jokes.forEach(joke -> assertNotNull(joke.getId()));
+        assertEquals("Joke 9", repository().findByDate(DATE.plusDays(18)).orElseThrow().getJoke());
+    }
+
+    @Test
+    void findByDateBetweenOrderByDateAscTest() {
+        repository().save(new Joke("Third", DATE.plusDays(20)));
+        repository().save(new Joke("First", DATE));
+        repository().save(new Joke("Second", DATE.plusDays(10)));
+        repository().save(new Joke("Outside", DATE.plusDays(40)));
+
+        List<Joke> jokes = repository().findByDateBetweenOrderByDateAsc(DATE, DATE.plusDays(30), Limit.unlimited());
+        assertEquals(List.of("First", "Second", "Third"), jokes.stream().map(Joke::getJoke).toList());
+
+        List<Joke> limited = repository().findByDateBetweenOrderByDateAsc(DATE.minusDays(5), DATE.plusDays(30), Limit.of(2));
+        assertEquals(List.of("First", "Second"), limited.stream().map(Joke::getJoke).toList());
+
+        assertTrue(repository().findByDateBetweenOrderByDateAsc(DATE.plusDays(50), DATE.plusDays(60), Limit.unlimited()).isEmpty());
+    }
+
+    @Test
+    void findExistingDatesTest() {
+        repository().save(new Joke("Joke", DATE));
+        repository().save(new Joke("Other", DATE.plusDays(2)));
+
+        List<LocalDate> existing = repository().findExistingDates(List.of(DATE, DATE.plusDays(1), DATE.plusDays(2), DATE.plusDays(100)));
+
+        assertEquals(Set.of(DATE, DATE.plusDays(2)), Set.copyOf(existing));
+    }
+
+    @Test
+    void deleteByIdsTest() {
+        Long first = repository().save(new Joke("Joke", DATE)).getId();
+        Long second = repository().save(new Joke("Other", DATE.plusDays(1))).getId();
+        repository().save(new Joke("Kept", DATE.plusDays(2)));
+
+        List<JokeDate> deleted = repository().deleteByIds(List.of(first, second, -1L));
+
+        assertEquals(Set.of(new JokeDate(first, DATE), new JokeDate(second, DATE.plusDays(1))), Set.copyOf(deleted));
+        assertEquals(1, repository().count());
+        assertTrue(repository().findByDate(DATE).isEmpty());
+        assertTrue(repository().findById(second).isEmpty());
+    }
+
+    @Test
+    void deleteByDateRangeTest() {
+        for (int i = 0; i < 10; i++) {
+            repository().save(new Joke("Joke " + i, DATE.plusDays(i)));
+        }
+
+        assertEquals(3, repository().deleteByDateRange(DATE.plusDays(2), DATE.plusDays(4)));
+        assertEquals(7, repository().count());
+        assertTrue(repository().findByDate(DATE.plusDays(3)).isEmpty());
+        assertTrue(repository().findByDate(DATE.plusDays(5)).isPresent());
+        assertEquals(0, repository().deleteByDateRange(DATE.plusDays(100), DATE.plusDays(200)));
+    }
+
+    @Test
+    void dateFreedByDeleteCanBeReusedTest() {
+        Long id = repository().save(new Joke("Joke", DATE)).getId();
+        repository().deleteByIds(List.of(id));
+
+        Joke replacement = repository().saveAndFlush(new Joke("Replacement", DATE));
+
+        assertNotEquals(id, replacement.getId());
+        assertEquals("Replacement", repository().findByDate(DATE).orElseThrow().getJoke());
+    }
+
+    @Test
+    void forEachJokeTest() {
+        repository().save(new Joke("Second", DATE.plusDays(1)));
+        repository().save(new Joke("First", DATE));
+        repository().save(new Joke("Third", DATE.plusDays(2)));
+
+        List<String> all = new ArrayList<>();
+        repository().forEachJoke(null, null, joke -> all.add(joke.getJoke()));
+        assertEquals(List.of("First", "Second", "Third"), all);
+
+        List<String> from = new ArrayList<>();
+        repository().forEachJoke(DATE.plusDays(1), null, joke -> from.add(joke.getJoke()));
+        assertEquals(List.of("Second", "Third"), from);
+
+        List<String> to = new ArrayList<>();
+        repository().forEachJoke(null, DATE, joke -> to.add(joke.getJoke()));
+        assertEquals(List.of("First"), to);
+    }
+}
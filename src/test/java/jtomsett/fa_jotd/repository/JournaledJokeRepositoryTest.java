@@ -0,0 +1,230 @@
+package jtomsett.fa_jotd.repository;
+
+import jtomsett.fa_jotd.dao.Joke;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the contract against an {@link InMemoryJokeRepository} with a {@link JokeJournal}, and checks after every
+ * test that a repository rebuilt from the journal holds the same jokes.
+ */
+public class JournaledJokeRepositoryTest extends JokeRepositoryContractTest {
+
+    private static final LocalDate DATE = LocalDate.of(2020, 1, 1);
+
+    @TempDir
+    private Path directory;
+
+    private JokeJournal journal;
+    private InMemoryJokeRepository repository;
+
+    @BeforeEach
+    void beforeEach() {
+        reopen(JokeJournal.Fsync.ALWAYS);
+    }
+
+    @AfterEach
+    void afterEach() {
+        List<Joke> before = jokes(repository);
+        reopen(JokeJournal.Fsync.ALWAYS);
+        assertEquals(before, jokes(repository));
+        assertVersionsAndIds(before, jokes(repository));
+        journal.close();
+    }
+
+    @Override
+    protected JokeRepository repository() {
+        return repository;
+    }
+
+    @Override
+    protected boolean limitsDateSpan() {
+        return true;
+    }
+
+    @Test
+    void idsContinueAfterRestartTest() {
+        Long first = repository.save(new Joke("Joke", DATE)).getId();
+        repository.deleteByIds(List.of(first));
+        reopen(JokeJournal.Fsync.NEVER);
+
+        assertTrue(repository.save(new Joke("Next", DATE)).getId() > first);
+    }
+
+    @Test
+    void idsContinueAfterDeletingHighestSinceSnapshotTest() {
+        repository.save(new Joke("Joke", DATE));
+        repository.compact();
+        Long highest = repository.save(new Joke("Highest", DATE.plusDays(1))).getId();
+        repository.deleteByIds(List.of(highest));
+        reopen(JokeJournal.Fsync.ALWAYS);
+
+        assertTrue(repository.save(new Joke("Next", DATE.plusDays(2))).getId() > highest);
+    }
+
+    @Test
+    void compactReplacesJournalWithSnapshotTest() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            repository.save(new Joke("Joke " + i, DATE.plusDays(i)));
+        }
+        repository.compact();
+        repository.save(new Joke("After snapshot", DATE.plusDays(20)));
+        repository.deleteByDateRange(DATE, DATE.plusDays(1));
+
+        assertEquals(List.of("journal-1.log", "snapshot-1.dat"), files());
+        reopen(JokeJournal.Fsync.INTERVAL);
+        assertEquals(9, repository.count());
+        assertEquals("After snapshot", repository.findByDate(DATE.plusDays(20)).orElseThrow().getJoke());
+
+        // Nothing written since the last snapshot: no new generation.
+        repository.compact();
+        repository.compact();
+        assertEquals(List.of("journal-2.log", "snapshot-2.dat"), files());
+    }
+
+    @Test
+    void compactDuringWritesRecoversEveryJokeTest() {
+        reopen(JokeJournal.Fsync.NEVER);
+        for (int i = 0; i < 2000; i++) {
+            repository.save(new Joke("Snapshot " + i + " " + "s".repeat(i % 64), DATE.plusDays(i)));
+        }
+        CompletableFuture<Void> writes = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 2000; i++) {
+                repository.save(new Joke("Journal " + i + " " + "j".repeat(i % 64), DATE.plusDays(2000 + i)));
+            }
+        });
+        int compactions = 0;
+        while (!writes.isDone() || compactions == 0) {
+            repository.compact();
+            compactions++;
+        }
+        writes.join();
+        List<Joke> before = jokes(repository);
+        reopen(JokeJournal.Fsync.NEVER);
+
+        assertEquals(4000, before.size());
+        assertEquals(before, jokes(repository));
+        assertVersionsAndIds(before, jokes(repository));
+    }
+
+    @Test
+    void rollOverWithoutSnapshotReplaysBothJournalsTest() throws IOException {
+        repository.save(new Joke("Joke", DATE));
+        journal.rollOver();
+        repository.save(new Joke("Other", DATE.plusDays(1)));
+
+        assertEquals(List.of("journal-0.log", "journal-1.log"), files());
+        reopen(JokeJournal.Fsync.ALWAYS);
+        assertEquals(2, repository.count());
+    }
+
+    @Test
+    void tornRecordIsDroppedTest() throws IOException {
+        repository.save(new Joke("Joke", DATE));
+        repository.save(new Joke("Torn", DATE.plusDays(1)));
+        journal.close();
+
+        // Flip the last byte of the last record, as if the machine died before its page reached disk.
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("journal-0.log").toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+        reopen(JokeJournal.Fsync.ALWAYS);
+
+        assertEquals(1, repository.count());
+        assertTrue(repository.findByDate(DATE.plusDays(1)).isEmpty());
+        repository.save(new Joke("Appended", DATE.plusDays(2)));
+        reopen(JokeJournal.Fsync.ALWAYS);
+        assertEquals(List.of("Joke", "Appended"), jokes(repository).stream().map(Joke::getJoke).toList());
+    }
+
+    @Test
+    void rejectedWriteIsNotJournaledTest() {
+        repository.save(new Joke("Joke", DATE));
+        Long id = repository.save(new Joke("Other", DATE.plusDays(1))).getId();
+        List<Joke> jokes = List.of(new Joke("New", DATE.plusDays(2)), new Joke("Clash", DATE));
+
+        assertThrows(RuntimeException.class, () -> repository.saveAll(jokes));
+        reopen(JokeJournal.Fsync.ALWAYS);
+
+        assertEquals(2, repository.count());
+        assertEquals(id + 1, repository.save(new Joke("Next", DATE.plusDays(3))).getId());
+    }
+
+    @Test
+    void failedAppendLeavesCallersJokeUnsavedTest() {
+        Joke saved = repository.save(new Joke("Joke", DATE));
+        journal.close();
+        Joke added = new Joke("Not journaled", DATE.plusDays(1));
+        saved.setJoke("Not journaled either");
+
+        assertThrows(DataAccessResourceFailureException.class, () -> repository.save(added));
+        assertThrows(DataAccessResourceFailureException.class, () -> repository.saveAll(List.of(saved)));
+        assertNull(added.getId());
+        assertNull(added.getVersion());
+        assertEquals(0L, saved.getVersion());
+
+        reopen(JokeJournal.Fsync.ALWAYS);
+        assertEquals(saved.getId() + 1, repository.save(added).getId());
+        assertEquals(1L, repository.save(saved).getVersion());
+    }
+
+    @Test
+    void recordsGrowPastMappedRegionTest() {
+        journal.close();
+        journal = new JokeJournal(directory, JokeJournal.Fsync.NEVER, 256);
+        repository = new InMemoryJokeRepository(journal);
+        for (int i = 0; i < 100; i++) {
+            repository.save(new Joke("Joke " + i + " " + "x".repeat(i), DATE.plusDays(i)));
+        }
+        reopen(JokeJournal.Fsync.NEVER);
+
+        assertEquals(100, repository.count());
+        assertEquals("Joke 99 " + "x".repeat(99), repository.findByDate(DATE.plusDays(99)).orElseThrow().getJoke());
+    }
+
+    private void reopen(JokeJournal.Fsync fsync) {
+        if (journal != null) {
+            journal.close();
+        }
+        journal = new JokeJournal(directory, fsync, 4096);
+        repository = new InMemoryJokeRepository(journal);
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static List<Joke> jokes(InMemoryJokeRepository repository) {
+        List<Joke> jokes = new ArrayList<>();
+        repository.findAll().forEach(jokes::add);
+        return jokes;
+    }
+
+    private static void assertVersionsAndIds(List<Joke> expected, List<Joke> actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getVersion(), actual.get(i).getVersion());
+            assertEquals(expected.get(i).getDescription(), actual.get(i).getDescription());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package jtomsett.fa_jotd.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the contract against H2. Each repository call gets its own transaction, as it would from the
+ * service, so the persistence context does not hide conflicts or share instances between calls.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class JpaJokeRepositoryTest extends JokeRepositoryContractTest {
+
+    @Autowired
+    private JokeRepository jokeRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private JokeRepository repository;
+
+    @BeforeEach
+    void beforeEach() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        repository = (JokeRepository) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{JokeRepository.class},
+                (proxy, method, args) -> transaction.execute(status -> {
+                    try {
+                        return method.invoke(jokeRepository, args);
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+                    }
+                }));
+    }
+
+    @AfterEach
+    void afterEach() {
+        jokeRepository.deleteAll();
+    }
+
+    /**
+     * The export must not hold every row at once. Allocation up to the first row is measured rather than
+     * heap use, which the collector makes too noisy to bound: a database that builds the whole result before
+     * returning it allocates a large share of the total before the callback first runs.
+     */
+    @Test
+    void forEachJokeStreamsRowsTest() {
+        int rows = 100_000;
+        String text = "x".repeat(200);
+        LocalDate start = LocalDate.of(1900, 1, 1);
+        List<Object[]> batch = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[]{i + 1L, text + i, start.plusDays(i)});
+        }
+        jdbcTemplate.batchUpdate("insert into joke (id, joke, date, version) values (?, ?, ?, 0)", batch);
+
+        try {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            long[] beforeFirst = new long[1];
+            long[] total = new long[1];
+            int[] count = new int[1];
+            // The first pass pays for one-off query compilation, so only the second is measured.
+            for (int pass = 0; pass < 2; pass++) {
+                count[0] = 0;
+                long before = threads.getCurrentThreadAllocatedBytes();
+                transaction.executeWithoutResult(status -> jokeRepository.forEachJoke(null, null, joke -> {
+                    if (count[0]++ == 0) {
+                        beforeFirst[0] = threads.getCurrentThreadAllocatedBytes() - before;
+                    }
+                }));
+                total[0] = threads.getCurrentThreadAllocatedBytes() - before;
+            }
+
+            assertEquals(rows, count[0]);
+            assertTrue(beforeFirst[0] < total[0] / 20,
+                    "allocated " + beforeFirst[0] + " of " + total[0] + " bytes before the first row");
+        } finally {
+            // Far quicker than deleteAll, which loads every row first.
+            jdbcTemplate.update("delete from joke");
+        }
+    }
+
+    @Override
+    protected JokeRepository repository() {
+        return repository;
+    }
+}
@@ -0,0 +1,77 @@
+package jtomsett.fa_jotd.repository;
+
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
+import jtomsett.fa_jotd.repository.ReadWriteRoutingDataSource.Route;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReadWriteRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource replica;
+
+    @Mock
+    private Clock clock;
+
+    private ReadWriteRoutingDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        lenient().when(clock.millis()).thenReturn(1_000_000L);
+        dataSource = new ReadWriteRoutingDataSource(primary, replica, clock, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void afterEach() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void readWriteTransactionUsesPrimaryTest() {
+        assertEquals(Route.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void readOnlyTransactionUsesReplicaTest() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertEquals(Route.REPLICA, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void readOnlyTransactionUsesPrimaryWithinReadYourWritesTest() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        dataSource.onJokeChanged(JokeChangedEvent.deleted(1L));
+
+        when(clock.millis()).thenReturn(1_004_999L);
+        assertEquals(Route.PRIMARY, dataSource.determineCurrentLookupKey());
+
+        when(clock.millis()).thenReturn(1_005_000L);
+        assertEquals(Route.REPLICA, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void rangeDeleteStartsReadYourWritesTest() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        dataSource.onJokesDeleted(new JokesDeletedEvent(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31)));
+
+        assertEquals(Route.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+}
@@ -0,0 +1,176 @@
+package jtomsett.fa_jotd.service;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class JokeSearchIndexTest {
+
+    private static final LocalDate START = LocalDate.of(2000, 1, 1);
+
+    @Mock
+    private JokeRepository jokeRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private JokeSearchIndex index;
+
+    @BeforeEach
+    void beforeEach() {
+        index = new JokeSearchIndex(jokeRepository, transactionManager);
+    }
+
+    @Test
+    void tokenizeTest() {
+        assertEquals(List.of("why", "did", "the", "cafe", "dont", "serve", "42", "chickens"),
+                JokeSearchIndex.tokenize("Why did the Café don't serve 42 'chickens'?"));
+        assertEquals(List.of(), JokeSearchIndex.tokenize("?! -- "));
+        assertEquals(List.of(), JokeSearchIndex.tokenize(null));
+    }
+
+    @Test
+    void searchEmptyTest() {
+        assertEquals(List.of(), index.search("chicken", 10));
+        add(1L, "Why did the chicken cross the road?", null);
+        assertEquals(List.of(), index.search("   ", 10));
+        assertEquals(List.of(), index.search("chicken", 0));
+    }
+
+    @Test
+    void everyWordMustMatchTest() {
+        add(1L, "Why did the chicken cross the road?", null);
+        add(2L, "Why did the duck cross the road?", null);
+        add(3L, "A chicken walks into a library", null);
+
+        assertEquals(List.of(1L), index.search("chicken road", 10));
+        assertEquals(List.of(1L, 2L), index.search("ROAD, why", 10));
+        assertEquals(List.of(), index.search("chicken goose", 10));
+    }
+
+    @Test
+    void searchCoversDescriptionTest() {
+        add(1L, "Knock knock", "A classic door joke");
+        assertEquals(List.of(1L), index.search("door", 10));
+        assertEquals(List.of(1L), index.search("knock classic", 10));
+    }
+
+    @Test
+    void prefixMatchRanksBelowExactMatchTest() {
+        add(1L, "The fungus was a fun guy", null);
+        add(2L, "A funny thing happened", null);
+        add(3L, "Nothing to see here", null);
+
+        assertEquals(List.of(1L, 2L), index.search("fun", 10));
+        assertEquals(List.of(2L), index.search("funn", 10));
+        assertEquals(List.of(2L), index.search("thing happ", 10));
+    }
+
+    @Test
+    void rarerWordsAndShorterJokesRankHigherTest() {
+        add(1L, "The cat sat on the mat", null);
+        add(2L, "The cat sat on the mat and then the cat sat on another mat for a long while", null);
+        add(3L, "The dog sat on the log", null);
+        add(4L, "The dog barked", null);
+
+        // "cat" appears in fewer jokes than "sat", and joke 1 is shorter than joke 2.
+        assertEquals(List.of(1L, 3L, 2L), index.search("sat", 10));
+        assertEquals(List.of(1L, 2L), index.search("cat sat", 10));
+        assertEquals(List.of(4L, 3L), index.search("dog", 10));
+        assertEquals(List.of(4L), index.search("dog", 1));
+    }
+
+    @Test
+    void searchFollowsChangesTest() {
+        add(1L, "Why did the chicken cross the road?", null);
+        assertEquals(List.of(1L), index.search("chicken", 10));
+
+        index.onJokeChanged(JokeChangedEvent.updated(START, joke(1L, START, "Why did the duck cross the road?", null)));
+        assertEquals(List.of(), index.search("chicken", 10));
+        assertEquals(List.of(1L), index.search("duck", 10));
+
+        index.onJokeChanged(JokeChangedEvent.deleted(1L));
+        assertEquals(List.of(), index.search("duck", 10));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void jokesDeletedRemovesRangeTest() {
+        for (int i = 0; i < 10; i++) {
+            index.onJokeChanged(JokeChangedEvent.added(joke(i + 1L, START.plusDays(i), "Joke number " + i, null)));
+        }
+        index.onJokesDeleted(new JokesDeletedEvent(START, START.plusDays(8)));
+
+        assertEquals(1, index.size());
+        assertEquals(List.of(10L), index.search("joke", 10));
+    }
+
+    @Test
+    void repeatedChangesKeepResultsTest() {
+        // Enough rewrites to sweep the postings of replaced text several times over.
+        for (int round = 0; round < 50; round++) {
+            for (long id = 1; id <= 100; id++) {
+                add(id, "Joke " + id + " version v" + round + (id % 2 == 0 ? " even" : " odd"), null);
+            }
+        }
+
+        assertEquals(100, index.size());
+        assertEquals(List.of(), index.search("v48", 10));
+        assertEquals(50, index.search("version v49 even", 100).size());
+        // Exact "7" before the prefix matches "71", "73"...
+        assertEquals(List.of(7L, 71L, 73L, 75L, 77L, 79L), index.search("7 odd", 100));
+        for (long id = 1; id <= 50; id++) {
+            index.onJokeChanged(JokeChangedEvent.deleted(id));
+        }
+        assertEquals(25, index.search("odd", 100).size());
+        assertEquals(List.of(71L, 73L, 75L, 77L, 79L), index.search("7 odd", 100));
+    }
+
+    @Test
+    void refreshReplaysChangesMadeWhileLoadingTest() {
+        doAnswer(invocation -> {
+            Consumer<Joke> action = invocation.getArgument(2);
+            action.accept(joke(1L, START, "Loaded chicken", null));
+            action.accept(joke(2L, START.plusDays(1), "Loaded duck", null));
+            // Committed while the cursor was open.
+            index.onJokeChanged(JokeChangedEvent.deleted(1L));
+            index.onJokeChanged(JokeChangedEvent.added(joke(3L, START.plusDays(2), "Added goose", null)));
+            return null;
+        }).when(jokeRepository).forEachJoke(isNull(), isNull(), any());
+
+        index.refresh();
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(), index.search("chicken", 10));
+        assertEquals(List.of(2L), index.search("duck", 10));
+        assertEquals(List.of(3L), index.search("goose", 10));
+    }
+
+    private void add(Long id, String text, String description) {
+        index.onJokeChanged(JokeChangedEvent.added(joke(id, START.plusDays(id), text, description)));
+    }
+
+    private static Joke joke(Long id, LocalDate date, String text, String description) {
+        Joke joke = new Joke(text, date);
+        joke.setId(id);
+        joke.setDescription(description);
+        return joke;
+    }
+}
@@ -1,20 +1,39 @@
 package jtomsett.fa_jotd.service;
 
 import jakarta.validation.ValidationException;
+import jtomsett.fa_jotd.config.LookupCacheProperties;
 import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.dto.BatchImportResult;
+import jtomsett.fa_jotd.dto.JokeLookupResult;
+import jtomsett.fa_jotd.dto.JokePage;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
 import jtomsett.fa_jotd.exceptions.InvalidJokeException;
+import jtomsett.fa_jotd.exceptions.InvalidRangeException;
 import jtomsett.fa_jotd.exceptions.JokeExistsForDateException;
 import jtomsett.fa_jotd.exceptions.JokeNotFoundException;
+import jtomsett.fa_jotd.exceptions.StaleJokeException;
+import jtomsett.fa_jotd.repository.JokeDate;
 import jtomsett.fa_jotd.repository.JokeRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -25,6 +44,21 @@ public class JokeServiceTest {
     @Mock
     private JokeRepository jokeRepository;
 
+    @Mock
+    private TodaysJokeHolder todaysJokeHolder;
+
+    @Mock
+    private RandomJokeIndex randomJokeIndex;
+
+    @Mock
+    private JokeSearchIndex jokeSearchIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private JokeLookupCache jokeLookupCache = new JokeLookupCache(new LookupCacheProperties(100, Duration.ofMinutes(5), Duration.ofSeconds(2)));
+
     @InjectMocks
     private JokeServiceImpl jokeService;
 
@@ -34,12 +68,13 @@ public class JokeServiceTest {
         Joke incomingJoke = new Joke("Joke", LocalDate.now());
         Joke savedJoke = new Joke(incomingJoke.getJoke(), incomingJoke.getDate());
         savedJoke.setId(12L);
-        when(jokeRepository.save(incomingJoke)).thenReturn(savedJoke);
+        when(jokeRepository.saveAndFlush(incomingJoke)).thenReturn(savedJoke);
 
         Joke returnedJoke = jokeService.addJoke(incomingJoke);
 
         assertEquals(returnedJoke,savedJoke);
         assertNotNull(returnedJoke.getId());
+        verify(eventPublisher,times(1)).publishEvent(JokeChangedEvent.added(savedJoke));
     }
 
     @Test
@@ -49,8 +84,32 @@ public class JokeServiceTest {
 
     @Test
     void addJokeInvalidDateTest(){
-        when(jokeRepository.existsJokeByDate(Mockito.any())).thenReturn(true);
+        when(jokeRepository.saveAndFlush(Mockito.any())).thenThrow(new DataIntegrityViolationException("ux_joke_date"));
         assertThrows(JokeExistsForDateException.class, () -> jokeService.addJoke(new Joke("Joke", LocalDate.now())));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    // addJokes() tests
+    @Test
+    void addJokesConflictsTest(){
+        LocalDate now = LocalDate.now();
+        Joke existingDate = new Joke("Joke", now);
+        Joke newDate = new Joke("Joke", now.plusDays(1));
+        Joke duplicateDate = new Joke("Joke", now.plusDays(1));
+        when(jokeRepository.findExistingDates(Mockito.anyCollection())).thenReturn(List.of(now));
+
+        List<BatchImportResult> results = jokeService.addJokes(List.of(existingDate, newDate, duplicateDate));
+
+        assertEquals(BatchImportResult.Status.CONFLICT, results.get(0).status());
+        assertEquals(BatchImportResult.Status.INSERTED, results.get(1).status());
+        assertEquals(BatchImportResult.Status.CONFLICT, results.get(2).status());
+        verify(jokeRepository,times(1)).findExistingDates(Mockito.anyCollection());
+        verify(jokeRepository,times(1)).saveAll(List.of(newDate));
+    }
+
+    @Test
+    void addJokesMissingDateTest(){
+        assertThrows(ValidationException.class, () -> jokeService.addJokes(List.of(new Joke("Joke", null))));
     }
 
     //updateJoke() Tests
@@ -58,52 +117,91 @@ public class JokeServiceTest {
     void updateJokeValidTest(){
         Joke incomingJoke = new Joke("Joke", LocalDate.now());
         incomingJoke.setId(12L);
+        incomingJoke.setVersion(0L);
         Joke savedJoke = new Joke("old joke", incomingJoke.getDate());
         savedJoke.setId(12L);
+        savedJoke.setVersion(0L);
 
         when(jokeRepository.findById(incomingJoke.getId())).thenReturn(Optional.of(savedJoke));
-        when(jokeRepository.save(incomingJoke)).thenReturn(incomingJoke);
+        when(jokeRepository.saveAndFlush(savedJoke)).thenReturn(savedJoke);
 
         Joke returnedJoke = jokeService.updateJoke(incomingJoke);
         assertEquals(returnedJoke,incomingJoke);
         assertEquals(returnedJoke.getId(),incomingJoke.getId());
+        verify(jokeRepository,never()).findByDate(Mockito.any());
     }
 
     @Test
     void updateJokeDateChangeTest(){
         Joke incomingJoke = new Joke("Joke", LocalDate.now());
         incomingJoke.setId(12L);
+        incomingJoke.setVersion(0L);
         Joke savedJoke = new Joke(incomingJoke.getJoke(), incomingJoke.getDate().plusDays(2));
         savedJoke.setId(12L);
+        savedJoke.setVersion(0L);
+
+        LocalDate previousDate = savedJoke.getDate();
 
         when(jokeRepository.findById(incomingJoke.getId())).thenReturn(Optional.of(savedJoke));
-        when(jokeRepository.findByDate(Mockito.any())).thenReturn(Optional.empty());
-        when(jokeRepository.save(incomingJoke)).thenReturn(incomingJoke);
+        when(jokeRepository.saveAndFlush(savedJoke)).thenReturn(savedJoke);
 
         Joke returnedJoke = jokeService.updateJoke(incomingJoke);
         assertEquals(returnedJoke,incomingJoke);
         assertEquals(returnedJoke.getId(),incomingJoke.getId());
+        verify(eventPublisher,times(1)).publishEvent(JokeChangedEvent.updated(previousDate, returnedJoke));
     }
 
     @Test
     void updateJokeExistingJokeOnDateTest(){
         Joke incomingJoke = new Joke("Joke", LocalDate.now());
         incomingJoke.setId(12L);
+        incomingJoke.setVersion(0L);
         Joke savedJoke = new Joke(incomingJoke.getJoke(), incomingJoke.getDate().plusDays(2));
         savedJoke.setId(12L);
-        Joke savedJoke2 = new Joke(incomingJoke.getJoke(), incomingJoke.getDate());
-        savedJoke2.setId(15L);
+        savedJoke.setVersion(0L);
 
         when(jokeRepository.findById(incomingJoke.getId())).thenReturn(Optional.of(savedJoke));
-        when(jokeRepository.findByDate(Mockito.any())).thenReturn(Optional.of(savedJoke2));
+        when(jokeRepository.saveAndFlush(savedJoke)).thenThrow(new DataIntegrityViolationException("ux_joke_date"));
 
         assertThrows(JokeExistsForDateException.class, () -> jokeService.updateJoke(incomingJoke));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void updateJokeStaleVersionTest(){
+        Joke incomingJoke = new Joke("Joke", LocalDate.now());
+        incomingJoke.setId(12L);
+        incomingJoke.setVersion(1L);
+        Joke savedJoke = new Joke("old joke", incomingJoke.getDate());
+        savedJoke.setId(12L);
+        savedJoke.setVersion(2L);
+
+        when(jokeRepository.findById(incomingJoke.getId())).thenReturn(Optional.of(savedJoke));
+
+        assertThrows(StaleJokeException.class, () -> jokeService.updateJoke(incomingJoke));
+        verify(jokeRepository,never()).saveAndFlush(Mockito.any());
+    }
+
+    @Test
+    void updateJokeConcurrentUpdateTest(){
+        Joke incomingJoke = new Joke("Joke", LocalDate.now());
+        incomingJoke.setId(12L);
+        incomingJoke.setVersion(2L);
+        Joke savedJoke = new Joke("old joke", incomingJoke.getDate());
+        savedJoke.setId(12L);
+        savedJoke.setVersion(2L);
+
+        when(jokeRepository.findById(incomingJoke.getId())).thenReturn(Optional.of(savedJoke));
+        when(jokeRepository.saveAndFlush(savedJoke)).thenThrow(new ObjectOptimisticLockingFailureException(Joke.class, 12L));
+
+        assertThrows(StaleJokeException.class, () -> jokeService.updateJoke(incomingJoke));
     }
 
     @Test
     void updateJokeDoesNotExistTest(){
         Joke incomingJoke = new Joke("Joke", LocalDate.now());
         incomingJoke.setId(15L);
+        incomingJoke.setVersion(0L);
         when(jokeRepository.findById(incomingJoke.getId())).thenReturn(Optional.empty());
         assertThrows(JokeNotFoundException.class, () -> jokeService.updateJoke(incomingJoke));
     }
@@ -114,12 +212,32 @@ public class JokeServiceTest {
         assertThrows(InvalidJokeException.class, () -> jokeService.updateJoke(incomingJoke));
     }
 
+    @Test
+    void updateJokeNullVersionTest(){
+        Joke incomingJoke = new Joke("Joke", LocalDate.now());
+        incomingJoke.setId(12L);
+        assertThrows(InvalidJokeException.class, () -> jokeService.updateJoke(incomingJoke));
+        verifyNoInteractions(jokeRepository);
+    }
+
     @Test
     void updateJokeNullJokeTest(){
         assertThrows(InvalidJokeException.class, () -> jokeService.updateJoke(null));
     }
 
 
+    //getJokeOfTheDay tests
+    @Test
+    void getJokeOfTheDayUsesHolderTest(){
+        Joke expectedJoke = new Joke("Joke", LocalDate.now());
+        when(todaysJokeHolder.get()).thenReturn(Optional.of(expectedJoke));
+
+        Optional<Joke> returnedJoke = jokeService.getJokeOfTheDay();
+        assertTrue(returnedJoke.isPresent());
+        assertEquals(returnedJoke.get(),expectedJoke);
+        verifyNoInteractions(jokeRepository);
+    }
+
     //getJokeById tests
     @Test
     void getJokeByIdValidTest(){
@@ -132,6 +250,58 @@ public class JokeServiceTest {
         assertEquals(returnedJoke.get(),expectedJoke);
     }
 
+    @Test
+    void getJokeByIdCachedTest(){
+        Joke expectedJoke = new Joke("Joke", LocalDate.now());
+        expectedJoke.setId(12L);
+
+        when(jokeRepository.findById(Mockito.eq(12L))).thenReturn(Optional.of(expectedJoke));
+        jokeService.getJokeById(12L);
+        Optional<Joke> returnedJoke =  jokeService.getJokeById(12L);
+        assertEquals(returnedJoke.get(),expectedJoke);
+        verify(jokeRepository,times(1)).findById(12L);
+    }
+
+    // getJokesById() tests
+    @Test
+    void getJokesByIdKeepsOrderTest(){
+        Joke first = new Joke("Joke", LocalDate.now());
+        first.setId(1L);
+        Joke second = new Joke("Other joke", LocalDate.now().plusDays(1));
+        second.setId(2L);
+        when(jokeRepository.findAllById(Set.of(1L, 2L, 3L))).thenReturn(List.of(first, second));
+
+        assertEquals(List.of(JokeLookupResult.found(second), JokeLookupResult.notFound(3L), JokeLookupResult.found(first),
+                        JokeLookupResult.found(second), JokeLookupResult.notFound(null)),
+                jokeService.getJokesById(Arrays.asList(2L, 3L, 1L, 2L, null)));
+    }
+
+    @Test
+    void getJokesByIdOnlyLoadsMissesTest(){
+        Joke first = new Joke("Joke", LocalDate.now());
+        first.setId(1L);
+        Joke second = new Joke("Other joke", LocalDate.now().plusDays(1));
+        second.setId(2L);
+        when(jokeRepository.findById(1L)).thenReturn(Optional.of(first));
+        when(jokeRepository.findAllById(Set.of(2L, 3L))).thenReturn(List.of(second));
+        jokeService.getJokeById(1L);
+
+        jokeService.getJokesById(List.of(1L, 2L, 3L));
+        // Found and missing ids are both cached now.
+        assertEquals(List.of(JokeLookupResult.found(first), JokeLookupResult.found(second), JokeLookupResult.notFound(3L)),
+                jokeService.getJokesById(List.of(1L, 2L, 3L)));
+        verify(jokeRepository,times(1)).findAllById(any());
+    }
+
+    @Test
+    void getJokesByIdInvalidCountTest(){
+        assertThrows(InvalidRangeException.class, () -> jokeService.getJokesById(List.of()));
+        assertThrows(InvalidRangeException.class, () -> jokeService.getJokesById(null));
+        List<Long> tooMany = LongStream.rangeClosed(1, JokeServiceImpl.MAX_PAGE_SIZE + 1).boxed().toList();
+        assertThrows(InvalidRangeException.class, () -> jokeService.getJokesById(tooMany));
+        verifyNoInteractions(jokeRepository);
+    }
+
     @Test void getJokeByIdNullIdTest(){
         Optional<Joke> returnedJoke =  jokeService.getJokeById(null);
         assertFalse(returnedJoke.isPresent());
@@ -149,21 +319,168 @@ public class JokeServiceTest {
         assertEquals(returnedJoke.get(),expectedJoke);
     }
 
+    @Test
+    void getJokeByDateMissCachedTest(){
+        LocalDate date = LocalDate.now();
+        when(jokeRepository.findByDate(Mockito.eq(date))).thenReturn(Optional.empty());
+
+        assertFalse(jokeService.getJokeByDate(date).isPresent());
+        assertFalse(jokeService.getJokeByDate(date).isPresent());
+        verify(jokeRepository,times(1)).findByDate(date);
+    }
+
+    @Test
+    void getJokeByDateMovedJokeTest(){
+        LocalDate date = LocalDate.now();
+        Joke savedJoke = new Joke("Joke", date);
+        savedJoke.setId(12L);
+        when(jokeRepository.findByDate(Mockito.eq(date))).thenReturn(Optional.of(savedJoke));
+        assertTrue(jokeService.getJokeByDate(date).isPresent());
+
+        Joke movedJoke = new Joke("Joke", date.plusDays(1));
+        movedJoke.setId(12L);
+        jokeLookupCache.onJokeChanged(JokeChangedEvent.updated(date, movedJoke));
+
+        assertFalse(jokeService.getJokeByDate(date).isPresent());
+        assertEquals(jokeService.getJokeByDate(date.plusDays(1)).get(),movedJoke);
+        assertEquals(jokeService.getJokeById(12L).get(),movedJoke);
+        verify(jokeRepository,times(1)).findByDate(Mockito.any());
+        verify(jokeRepository,times(0)).findById(Mockito.any());
+    }
+
+    @Test
+    void getJokeByDateDeletedJokeTest(){
+        LocalDate date = LocalDate.now();
+        Joke savedJoke = new Joke("Joke", date);
+        savedJoke.setId(12L);
+        when(jokeRepository.findByDate(Mockito.eq(date))).thenReturn(Optional.of(savedJoke));
+        assertTrue(jokeService.getJokeByDate(date).isPresent());
+
+        jokeLookupCache.onJokeChanged(JokeChangedEvent.deleted(12L));
+
+        assertFalse(jokeService.getJokeByDate(date).isPresent());
+        assertFalse(jokeService.getJokeById(12L).isPresent());
+        verify(jokeRepository,times(1)).findByDate(Mockito.any());
+    }
+
     @Test void getJokeByDateNullDateTest(){
         Optional<Joke> returnedJoke =  jokeService.getJokeByDate(null);
         assertFalse(returnedJoke.isPresent());
     }
 
+    //getJokes tests
+    @Test
+    void getJokesNextCursorTest(){
+        LocalDate from = LocalDate.now();
+        LocalDate to = from.plusDays(30);
+        List<Joke> jokes = List.of(new Joke("Joke", from.plusDays(3)), new Joke("Joke", from.plusDays(4)), new Joke("Joke", from.plusDays(5)));
+        when(jokeRepository.findByDateBetweenOrderByDateAsc(from.plusDays(3), to, Limit.of(3))).thenReturn(jokes);
+
+        JokePage page = jokeService.getJokes(from, to, 2, from.plusDays(2));
+        assertEquals(jokes.subList(0, 2), page.jokes());
+        assertEquals(from.plusDays(4), page.next());
+    }
+
+    @Test
+    void getJokesInvalidRangeTest(){
+        LocalDate from = LocalDate.now();
+        assertThrows(InvalidRangeException.class, () -> jokeService.getJokes(from, from.minusDays(1), 10, null));
+        assertThrows(InvalidRangeException.class, () -> jokeService.getJokes(from, from, 0, null));
+    }
+
+    // getRandomJoke() tests
+    @Test
+    void getRandomJokeValidTest(){
+        LocalDate date = LocalDate.now();
+        Joke joke = new Joke("Joke", date);
+        when(randomJokeIndex.pick(null, null)).thenReturn(Optional.of(date));
+        when(jokeRepository.findByDate(date)).thenReturn(Optional.of(joke));
+
+        assertEquals(Optional.of(joke), jokeService.getRandomJoke(null, null));
+    }
+
+    @Test
+    void getRandomJokeEmptyTest(){
+        LocalDate from = LocalDate.now();
+        when(randomJokeIndex.pick(from, from)).thenReturn(Optional.empty());
+
+        assertEquals(Optional.empty(), jokeService.getRandomJoke(from, from));
+        verifyNoInteractions(jokeRepository);
+    }
+
+    @Test
+    void getRandomJokeInvalidRangeTest(){
+        LocalDate from = LocalDate.now();
+        assertThrows(InvalidRangeException.class, () -> jokeService.getRandomJoke(from, from.minusDays(1)));
+        verifyNoInteractions(randomJokeIndex);
+    }
+
+    // searchJokes() tests
+    @Test
+    void searchJokesValidTest(){
+        Joke first = new Joke("Joke", LocalDate.now());
+        first.setId(1L);
+        Joke second = new Joke("Other joke", LocalDate.now().plusDays(1));
+        second.setId(2L);
+        when(jokeSearchIndex.search("joke", 10)).thenReturn(List.of(2L, 1L, 3L));
+        // 3 was deleted after the index was searched.
+        when(jokeRepository.findAllById(Set.of(1L, 2L, 3L))).thenReturn(List.of(first, second));
+
+        assertEquals(List.of(second, first), jokeService.searchJokes("joke", 10));
+    }
+
+    @Test
+    void searchJokesInvalidLimitTest(){
+        assertThrows(InvalidRangeException.class, () -> jokeService.searchJokes("joke", 0));
+        assertThrows(InvalidRangeException.class, () -> jokeService.searchJokes("joke", JokeServiceImpl.MAX_PAGE_SIZE + 1));
+        verifyNoInteractions(jokeSearchIndex);
+    }
+
     //deleteJoke(Long id) tests
     @Test
     void deleteJokeByIdValidTest(){
-        jokeService.deleteJoke(12L);
-        verify(jokeRepository,times(1)).deleteById(Mockito.isNotNull());
+        LocalDate date = LocalDate.now();
+        when(jokeRepository.deleteByIds(Set.of(12L))).thenReturn(List.of(new JokeDate(12L, date)));
+        assertEquals(1, jokeService.deleteJoke(12L));
+        verify(jokeRepository,never()).deleteById(Mockito.any());
+        verify(eventPublisher,times(1)).publishEvent(JokeChangedEvent.deleted(12L, date));
+    }
+
+    @Test
+    void deleteJokeByIdNotFoundTest(){
+        when(jokeRepository.deleteByIds(Set.of(12L))).thenReturn(List.of());
+        assertEquals(0, jokeService.deleteJoke(12L));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void deleteJokesByIdsPublishesOnlyDeletedTest(){
+        LocalDate date = LocalDate.now();
+        when(jokeRepository.deleteByIds(Set.of(12L, 13L, 14L)))
+                .thenReturn(List.of(new JokeDate(12L, date), new JokeDate(14L, date.plusDays(2))));
+        assertEquals(2, jokeService.deleteJokes(List.of(12L, 13L, 14L, 12L)));
+        verify(eventPublisher,times(1)).publishEvent(JokeChangedEvent.deleted(12L, date));
+        verify(eventPublisher,times(1)).publishEvent(JokeChangedEvent.deleted(14L, date.plusDays(2)));
+        verifyNoMoreInteractions(eventPublisher);
     }
 
     @Test
     void deleteJokeByIdNullIdTest(){
-        jokeService.deleteJoke(null);
-        verify(jokeRepository,times(0)).deleteById(Mockito.isNotNull());
+        assertEquals(0, jokeService.deleteJoke(null));
+        verifyNoInteractions(jokeRepository);
+    }
+
+    @Test
+    void deleteJokesByRangeTest(){
+        LocalDate from = LocalDate.now();
+        when(jokeRepository.deleteByDateRange(from, from.plusDays(9))).thenReturn(10);
+        assertEquals(10, jokeService.deleteJokes(from, from.plusDays(9)));
+        verify(eventPublisher,times(1)).publishEvent(new JokesDeletedEvent(from, from.plusDays(9)));
+    }
+
+    @Test
+    void deleteJokesByInvalidRangeTest(){
+        LocalDate from = LocalDate.now();
+        assertThrows(InvalidRangeException.class, () -> jokeService.deleteJokes(from, from.minusDays(1)));
     }
 }
@@ -0,0 +1,206 @@
+package jtomsett.fa_jotd.service;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.event.JokesDeletedEvent;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class RandomJokeIndexTest {
+
+    private static final LocalDate START = LocalDate.of(2000, 1, 1);
+    private static final int ROWS = 1_000_000;
+
+    @Mock
+    private JokeRepository jokeRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RandomJokeIndex index;
+
+    @BeforeEach
+    void beforeEach() {
+        index = new RandomJokeIndex(jokeRepository, transactionManager);
+    }
+
+    @Test
+    void pickEmptyTest() {
+        assertEquals(Optional.empty(), index.pick(null, null));
+        assertEquals(Optional.empty(), index.pick(START, START.plusDays(10)));
+    }
+
+    @Test
+    void pickFollowsChangesTest() {
+        index.onJokeChanged(JokeChangedEvent.added(joke(1L, START)));
+        assertEquals(Optional.of(START), index.pick(null, null));
+
+        index.onJokeChanged(JokeChangedEvent.updated(START, joke(1L, START.plusDays(5))));
+        assertEquals(Optional.of(START.plusDays(5)), index.pick(null, null));
+        assertEquals(Optional.empty(), index.pick(START, START.plusDays(4)));
+
+        index.onJokeChanged(JokeChangedEvent.deleted(1L));
+        assertEquals(Optional.empty(), index.pick(null, null));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void pickWithinRangeTest() {
+        for (int i = 0; i < 100; i++) {
+            index.onJokeChanged(JokeChangedEvent.added(joke(i + 1L, START.plusDays(i * 3L))));
+        }
+
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 1000; i++) {
+            LocalDate date = index.pick(START.plusDays(10), START.plusDays(20), random).orElseThrow();
+            assertTrue(Set.of(START.plusDays(12), START.plusDays(15), START.plusDays(18)).contains(date), date.toString());
+        }
+        assertEquals(Optional.empty(), index.pick(START.plusDays(1), START.plusDays(2)));
+        assertEquals(Optional.of(START.plusDays(297)), index.pick(START.plusDays(297), null));
+        assertEquals(Optional.of(START), index.pick(null, START));
+    }
+
+    @Test
+    void jokesDeletedRemovesRangeTest() {
+        for (int i = 0; i < 10; i++) {
+            index.onJokeChanged(JokeChangedEvent.added(joke(i + 1L, START.plusDays(i))));
+        }
+        index.onJokesDeleted(new JokesDeletedEvent(START, START.plusDays(8)));
+
+        assertEquals(1, index.size());
+        assertEquals(Optional.of(START.plusDays(9)), index.pick(null, null));
+        // The remaining joke can still be deleted by id after moving slots.
+        index.onJokeChanged(JokeChangedEvent.deleted(10L));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void growsInBothDirectionsTest() {
+        index.onJokeChanged(JokeChangedEvent.added(joke(1L, START)));
+        index.onJokeChanged(JokeChangedEvent.added(joke(2L, START.plusDays(5000))));
+        index.onJokeChanged(JokeChangedEvent.added(joke(3L, START.minusDays(5000))));
+
+        assertEquals(Optional.of(START.minusDays(5000)), index.pick(null, START.minusDays(1)));
+        assertEquals(Optional.of(START), index.pick(START.minusDays(1), START.plusDays(1)));
+        assertEquals(Optional.of(START.plusDays(5000)), index.pick(START.plusDays(1), null));
+    }
+
+    @Test
+    void jokeBeyondSpanIsKeptTest() {
+        LocalDate far = START.plusDays(RandomJokeIndex.MAX_SPAN_DAYS);
+        index.onJokeChanged(JokeChangedEvent.added(joke(1L, START)));
+        index.onJokeChanged(JokeChangedEvent.added(joke(2L, far)));
+        index.onJokeChanged(JokeChangedEvent.added(joke(3L, far.plusDays(1))));
+
+        assertEquals(3, index.size());
+        Set<LocalDate> picked = new HashSet<>();
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 200; i++) {
+            picked.add(index.pick(null, null, random).orElseThrow());
+        }
+        assertEquals(Set.of(START, far, far.plusDays(1)), picked);
+        assertEquals(Optional.of(START), index.pick(null, far.minusDays(1)));
+        assertEquals(Optional.of(far), index.pick(START.plusDays(1), far));
+
+        // Another joke on the same far day replaces it, as within the span.
+        index.onJokeChanged(JokeChangedEvent.added(joke(4L, far)));
+        assertEquals(3, index.size());
+        index.onJokeChanged(JokeChangedEvent.deleted(4L));
+        assertEquals(Optional.of(far.plusDays(1)), index.pick(START.plusDays(1), null));
+        index.onJokesDeleted(new JokesDeletedEvent(far, far.plusDays(1)));
+        assertEquals(1, index.size());
+        assertEquals(Optional.empty(), index.pick(START.plusDays(1), null));
+    }
+
+    @Test
+    void refreshReplaysChangesMadeWhileLoadingTest() {
+        doAnswer(invocation -> {
+            Consumer<Joke> action = invocation.getArgument(2);
+            action.accept(joke(1L, START));
+            action.accept(joke(2L, START.plusDays(1)));
+            // Committed while the cursor was open.
+            index.onJokeChanged(JokeChangedEvent.deleted(1L));
+            index.onJokeChanged(JokeChangedEvent.added(joke(3L, START.plusDays(2))));
+            return null;
+        }).when(jokeRepository).forEachJoke(isNull(), isNull(), any());
+
+        index.refresh();
+
+        assertEquals(2, index.size());
+        Set<LocalDate> picked = new HashSet<>();
+        SplittableRandom random = new SplittableRandom(2);
+        for (int i = 0; i < 200; i++) {
+            picked.add(index.pick(null, null, random).orElseThrow());
+        }
+        assertEquals(Set.of(START.plusDays(1), START.plusDays(2)), picked);
+    }
+
+    @Test
+    void pickIsUniformAtOneMillionRowsTest() {
+        fill(ROWS);
+        SplittableRandom random = new SplittableRandom(42);
+
+        // Whole table: 100 buckets of 10,000 consecutive jokes.
+        int[] buckets = new int[100];
+        int draws = 1_000_000;
+        for (int i = 0; i < draws; i++) {
+            long offset = index.pick(null, null, random).orElseThrow().toEpochDay() - START.toEpochDay();
+            buckets[(int) (offset / 2 / (ROWS / buckets.length))]++;
+        }
+        // Chi-squared with 99 degrees of freedom; 148.2 is the 0.1% critical value.
+        assertTrue(chiSquared(buckets, draws) < 148.2, "whole table is not uniform");
+
+        // A range of 50 jokes in the middle of the table.
+        LocalDate from = START.plusDays(500_000);
+        int[] inRange = new int[50];
+        int rangeDraws = 100_000;
+        for (int i = 0; i < rangeDraws; i++) {
+            long offset = index.pick(from, from.plusDays(99), random).orElseThrow().toEpochDay() - from.toEpochDay();
+            assertEquals(0, offset % 2);
+            inRange[(int) (offset / 2)]++;
+        }
+        // 49 degrees of freedom; 85.4 is the 0.1% critical value.
+        assertTrue(chiSquared(inRange, rangeDraws) < 85.4, "range is not uniform");
+    }
+
+    // A million jokes on every other day, so ranges also cover days without a joke.
+    private void fill(int rows) {
+        for (int i = 0; i < rows; i++) {
+            index.onJokeChanged(JokeChangedEvent.added(joke(i + 1L, START.plusDays(i * 2L))));
+        }
+        assertEquals(rows, index.size());
+    }
+
+    private static double chiSquared(int[] observed, int draws) {
+        double expected = (double) draws / observed.length;
+        double sum = 0;
+        for (int count : observed) {
+            sum += (count - expected) * (count - expected) / expected;
+        }
+        return sum;
+    }
+
+    private static Joke joke(Long id, LocalDate date) {
+        Joke joke = new Joke("Joke " + id, date);
+        joke.setId(id);
+        return joke;
+    }
+}
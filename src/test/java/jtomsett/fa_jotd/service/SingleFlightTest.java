@@ -0,0 +1,267 @@
+package jtomsett.fa_jotd.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jtomsett.fa_jotd.exceptions.LookupTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 50;
+    private static final Duration MAX_WAIT = Duration.ofSeconds(10);
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneLoadTest() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(MAX_WAIT);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> results = callAll(flight, () -> {
+            loads.incrementAndGet();
+            release.await();
+            return "loaded";
+        });
+        awaitCoalesced(flight, CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("loaded", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(CALLERS - 1, flight.coalesced());
+
+        // Nothing is kept without a cache, so the next caller loads again.
+        assertEquals("again", flight.get("key", key -> "again"));
+        assertEquals(CALLERS - 1, flight.coalesced());
+    }
+
+    @Test
+    void cachedResultIsNotCoalescedTest() {
+        AsyncCache<String, String> cache = Caffeine.newBuilder().buildAsync();
+        SingleFlight<String, String> flight = new SingleFlight<>(cache, MAX_WAIT);
+
+        assertEquals("first", flight.get("key", key -> "first"));
+        assertEquals("first", flight.get("key", key -> "second"));
+        assertEquals(0, flight.coalesced());
+    }
+
+    @Test
+    void failureReachesEveryWaiterTest() throws Exception {
+        AsyncCache<String, String> cache = Caffeine.newBuilder().buildAsync();
+        SingleFlight<String, String> flight = new SingleFlight<>(cache, MAX_WAIT);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = callAll(flight, () -> {
+            release.await();
+            throw new IllegalStateException("database down");
+        });
+        awaitCoalesced(flight, CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertEquals("database down", e.getCause().getMessage());
+        }
+        // A failed load is not cached.
+        assertEquals("recovered", flight.get("key", key -> "recovered"));
+    }
+
+    @Test
+    void waitersGiveUpAfterMaxWaitTest() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> flight.get("key", key -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return "slow";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(LookupTimeoutException.class, () -> flight.get("key", key -> "unused"));
+        CompletableFuture<String> async = flight.getAsync("key", key -> CompletableFuture.completedFuture("unused"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> async.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(LookupTimeoutException.class, e.getCause());
+
+        // The load itself carries on.
+        release.countDown();
+        assertEquals("slow", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void getAllLoadsOnlyWhatIsMissingTest() throws Exception {
+        AsyncCache<String, String> cache = Caffeine.newBuilder().buildAsync();
+        SingleFlight<String, String> flight = new SingleFlight<>(cache, MAX_WAIT);
+        flight.get("cached", key -> "from cache");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> flight.get("in flight", key -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return "from leader";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // The key in flight is read again rather than waited on.
+        List<Set<String>> loaded = new ArrayList<>();
+        Map<String, String> values = flight.getAll(List.of("missing", "cached", "in flight", "missing"), keys -> {
+            loaded.add(keys);
+            return Map.of("missing", "from getAll", "in flight", "also from getAll");
+        });
+        assertEquals(List.of("missing", "cached", "in flight"), List.copyOf(values.keySet()));
+        assertEquals(List.of("from getAll", "from cache", "also from getAll"), List.copyOf(values.values()));
+        assertEquals(List.of(Set.of("missing", "in flight")), loaded);
+        assertEquals(0, flight.coalesced());
+
+        // Only the keys it started loading are left to getAll's result; the leader's load stands.
+        release.countDown();
+        assertEquals("from leader", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("from leader", flight.get("in flight", key -> "unused"));
+        assertEquals("from getAll", flight.get("missing", key -> "unused"));
+    }
+
+    @Test
+    void getAllSharesItsLoadWithSingleCallersTest() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(MAX_WAIT);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Map<String, String>> all = executor.submit(() -> flight.getAll(List.of("a", "b"), keys -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return Map.of("a", "loaded a", "b", "loaded b");
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Future<String> single = executor.submit(() -> flight.get("b", key -> "own load"));
+        awaitCoalesced(flight, 1);
+        release.countDown();
+
+        assertEquals(Map.of("a", "loaded a", "b", "loaded b"), all.get(5, TimeUnit.SECONDS));
+        assertEquals("loaded b", single.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void asyncCallersShareOneLoadTest() throws Exception {
+        AsyncCache<String, String> cache = Caffeine.newBuilder().buildAsync();
+        SingleFlight<String, String> flight = new SingleFlight<>(cache, MAX_WAIT);
+        CompletableFuture<String> loading = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(flight.getAsync("key", key -> {
+                loads.incrementAndGet();
+                return loading;
+            }));
+        }
+        loading.complete("loaded");
+
+        for (CompletableFuture<String> result : results) {
+            assertEquals("loaded", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(CALLERS - 1, flight.coalesced());
+    }
+
+    @Test
+    void getAllAsyncSharesItsLoadWithAsyncCallersTest() throws Exception {
+        AsyncCache<String, String> cache = Caffeine.newBuilder().buildAsync();
+        SingleFlight<String, String> flight = new SingleFlight<>(cache, MAX_WAIT);
+        flight.get("cached", key -> "from cache");
+        CompletableFuture<Map<String, String>> loading = new CompletableFuture<>();
+        List<Set<String>> loaded = new ArrayList<>();
+
+        CompletableFuture<Map<String, String>> all = flight.getAllAsync(List.of("b", "cached", "a", "b"), keys -> {
+            loaded.add(keys);
+            return loading;
+        });
+        CompletableFuture<String> single = flight.getAsync("a", key -> CompletableFuture.completedFuture("own load"));
+        assertFalse(all.isDone());
+        loading.complete(Map.of("a", "loaded a", "b", "loaded b"));
+
+        assertEquals(List.of("b", "cached", "a"), List.copyOf(all.get(5, TimeUnit.SECONDS).keySet()));
+        assertEquals(List.of("loaded b", "from cache", "loaded a"), List.copyOf(all.get(5, TimeUnit.SECONDS).values()));
+        assertEquals(List.of(Set.of("a", "b")), loaded);
+        assertEquals("loaded a", single.get(5, TimeUnit.SECONDS));
+        assertEquals(1, flight.coalesced());
+    }
+
+    @Test
+    void getAllAsyncFailureReachesWaitersTest() {
+        SingleFlight<String, String> flight = new SingleFlight<>(MAX_WAIT);
+        CompletableFuture<Map<String, String>> loading = new CompletableFuture<>();
+
+        CompletableFuture<Map<String, String>> all = flight.getAllAsync(List.of("a"), keys -> loading);
+        CompletableFuture<String> single = flight.getAsync("a", key -> CompletableFuture.completedFuture("own load"));
+        loading.completeExceptionally(new IllegalStateException("down"));
+
+        ExecutionException allFailure = assertThrows(ExecutionException.class, () -> all.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, allFailure.getCause());
+        ExecutionException singleFailure = assertThrows(ExecutionException.class, () -> single.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, singleFailure.getCause());
+        // The failed load is not kept.
+        assertEquals("again", flight.get("a", key -> "again"));
+    }
+
+    private List<Future<String>> callAll(SingleFlight<String, String> flight, Callable<String> load) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> flight.get("key", key -> {
+                try {
+                    return load.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            })));
+        }
+        return results;
+    }
+
+    private static void awaitCoalesced(SingleFlight<?, ?> flight, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (flight.coalesced() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, flight.coalesced());
+    }
+}
@@ -0,0 +1,140 @@
+package jtomsett.fa_jotd.service;
+
+import jtomsett.fa_jotd.dao.Joke;
+import jtomsett.fa_jotd.event.JokeChangedEvent;
+import jtomsett.fa_jotd.repository.JokeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TodaysJokeHolderTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 2, 24);
+
+    @Mock
+    private JokeRepository jokeRepository;
+
+    @Mock
+    private Clock clock;
+
+    private TodaysJokeHolder todaysJokeHolder;
+
+    @BeforeEach
+    void beforeEach() {
+        lenient().when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+        setToday(TODAY);
+        todaysJokeHolder = new TodaysJokeHolder(jokeRepository, clock);
+    }
+
+    @Test
+    void getLoadsOnceTest(){
+        Joke joke = joke(1L, TODAY);
+        when(jokeRepository.findByDate(TODAY)).thenReturn(Optional.of(joke));
+
+        assertEquals(Optional.of(joke), todaysJokeHolder.get());
+        assertEquals(Optional.of(joke), todaysJokeHolder.get());
+        verify(jokeRepository,times(1)).findByDate(TODAY);
+    }
+
+    @Test
+    void rolloverUsesPreloadedJokeTest(){
+        Joke tomorrowsJoke = joke(2L, TODAY.plusDays(1));
+        when(jokeRepository.findByDate(TODAY.plusDays(1))).thenReturn(Optional.of(tomorrowsJoke));
+
+        todaysJokeHolder.preloadTomorrow();
+        setToday(TODAY.plusDays(1));
+
+        assertEquals(Optional.of(tomorrowsJoke), todaysJokeHolder.get());
+        verify(jokeRepository,times(1)).findByDate(Mockito.any());
+    }
+
+    @Test
+    void addedJokeForTodayIsAppliedTest(){
+        when(jokeRepository.findByDate(Mockito.any())).thenReturn(Optional.empty());
+        todaysJokeHolder.refresh();
+        assertTrue(todaysJokeHolder.get().isEmpty());
+
+        Joke joke = joke(3L, TODAY);
+        todaysJokeHolder.onJokeChanged(JokeChangedEvent.added(joke));
+
+        assertEquals(Optional.of(joke), todaysJokeHolder.get());
+        verify(jokeRepository,times(2)).findByDate(Mockito.any());
+    }
+
+    @Test
+    void movedAndDeletedJokesAreClearedTest(){
+        Joke joke = joke(4L, TODAY);
+        when(jokeRepository.findByDate(TODAY)).thenReturn(Optional.of(joke));
+        when(jokeRepository.findByDate(TODAY.plusDays(1))).thenReturn(Optional.empty());
+        todaysJokeHolder.refresh();
+
+        Joke moved = joke(4L, TODAY.plusDays(1));
+        todaysJokeHolder.onJokeChanged(JokeChangedEvent.updated(TODAY, moved));
+        assertTrue(todaysJokeHolder.get().isEmpty());
+
+        setToday(TODAY.plusDays(1));
+        assertEquals(Optional.of(moved), todaysJokeHolder.get());
+
+        todaysJokeHolder.onJokeChanged(JokeChangedEvent.deleted(4L));
+        assertTrue(todaysJokeHolder.get().isEmpty());
+    }
+
+    @Test
+    void changeBetweenReadAndStoreIsKeptTest(){
+        Joke stale = joke(5L, TODAY);
+        Joke updated = joke(5L, TODAY);
+        updated.setJoke("Updated joke");
+        when(jokeRepository.findByDate(TODAY)).thenReturn(Optional.of(stale), Optional.of(updated));
+        when(jokeRepository.findByDate(TODAY.plusDays(1))).thenReturn(Optional.empty());
+        TodaysJokeHolder holder = spy(todaysJokeHolder);
+        // The update commits after the first read of today returns, before the holder stores it.
+        lenient().doAnswer(invocation -> {
+            Object read = invocation.callRealMethod();
+            holder.onJokeChanged(JokeChangedEvent.updated(TODAY, updated));
+            return read;
+        }).doCallRealMethod().when(holder).read(TODAY);
+
+        holder.refresh();
+
+        assertEquals(Optional.of(updated), holder.get());
+    }
+
+    @Test
+    void changeDuringRolloverIsKeptTest(){
+        Joke stale = joke(6L, TODAY.plusDays(1));
+        Joke updated = joke(6L, TODAY.plusDays(1));
+        updated.setJoke("Updated joke");
+        when(jokeRepository.findByDate(TODAY.plusDays(1))).thenReturn(Optional.of(stale), Optional.of(updated));
+        TodaysJokeHolder holder = spy(todaysJokeHolder);
+        lenient().doAnswer(invocation -> {
+            Object read = invocation.callRealMethod();
+            holder.onJokeChanged(JokeChangedEvent.updated(TODAY.plusDays(1), updated));
+            return read;
+        }).doCallRealMethod().when(holder).read(TODAY.plusDays(1));
+
+        setToday(TODAY.plusDays(1));
+        assertEquals(Optional.of(updated), holder.get());
+    }
+
+    private void setToday(LocalDate date) {
+        when(clock.instant()).thenReturn(date.atTime(12, 0).toInstant(ZoneOffset.UTC));
+    }
+
+    private static Joke joke(Long id, LocalDate date) {
+        Joke joke = new Joke("Joke", date);
+        joke.setId(id);
+        return joke;
+    }
+}